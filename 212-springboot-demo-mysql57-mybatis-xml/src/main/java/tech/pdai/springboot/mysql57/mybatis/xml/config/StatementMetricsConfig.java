@@ -0,0 +1,43 @@
+package tech.pdai.springboot.mysql57.mybatis.xml.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tech.pdai.springboot.mysql57.mybatis.xml.metrics.StatementMetricsEndpoint;
+import tech.pdai.springboot.mysql57.mybatis.xml.metrics.StatementMetricsInterceptor;
+
+import java.time.Duration;
+
+/**
+ * per statement metrics of mybatis, on unless mybatis.metrics.enabled is false.
+ *
+ * @author pdai
+ */
+@Configuration
+@ConditionalOnProperty(name = "mybatis.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class StatementMetricsConfig {
+
+    /**
+     * picked up by the mybatis auto configuration as a plugin.
+     *
+     * @param slowThreshold calls that take at least this long are sampled with their parameters
+     * @param slowSamples   slow calls kept per statement
+     * @return interceptor
+     */
+    @Bean
+    public StatementMetricsInterceptor statementMetricsInterceptor(
+            @Value("${mybatis.metrics.slow-threshold:200ms}") Duration slowThreshold,
+            @Value("${mybatis.metrics.slow-samples:10}") int slowSamples) {
+        return new StatementMetricsInterceptor(slowThreshold.toNanos(), slowSamples);
+    }
+
+    /**
+     * @param interceptor interceptor
+     * @return endpoint
+     */
+    @Bean
+    public StatementMetricsEndpoint statementMetricsEndpoint(StatementMetricsInterceptor interceptor) {
+        return new StatementMetricsEndpoint(interceptor);
+    }
+}
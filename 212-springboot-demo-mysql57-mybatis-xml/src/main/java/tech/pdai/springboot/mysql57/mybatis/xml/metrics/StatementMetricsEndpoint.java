@@ -0,0 +1,59 @@
+package tech.pdai.springboot.mysql57.mybatis.xml.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * actuator endpoint of the statement counters, /actuator/mybatis.
+ *
+ * @author pdai
+ */
+@Endpoint(id = "mybatis")
+public class StatementMetricsEndpoint {
+
+    private final StatementMetricsInterceptor interceptor;
+
+    /**
+     * init.
+     *
+     * @param interceptor interceptor
+     */
+    public StatementMetricsEndpoint(StatementMetricsInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    /**
+     * @return counters of all statements, the most time spent first
+     */
+    @ReadOperation
+    public List<StatementStats.Snapshot> statements() {
+        return interceptor.getStatements().stream()
+                .map(StatementStats::snapshot)
+                .sorted(Comparator.comparingDouble((StatementStats.Snapshot s) -> s.getCalls().getTotalMs()).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param id id of the mapped statement
+     * @return counters of the statement, 404 if it was not called
+     */
+    @ReadOperation
+    public StatementStats.Snapshot statement(@Selector String id) {
+        StatementStats stats = interceptor.getStatement(id);
+        return stats == null ? null : stats.snapshot();
+    }
+
+    /**
+     * drop all counters.
+     */
+    @DeleteOperation
+    public void reset() {
+        interceptor.reset();
+    }
+}
@@ -32,6 +32,6 @@ public interface IRoleDao {
     List<Role> findList(RoleQueryBean roleQueryBean);
 
     @ResultMap("RoleResult")
-    @Select("select r.id, r.name, r.role_key, r.description, r.create_time, r.update_time from tb_role r, tb_user_role ur where r.id = ur.user_id and ur.user_id = #{userId}")
+    @Select("select r.id, r.name, r.role_key, r.description, r.create_time, r.update_time from tb_role r, tb_user_role ur where r.id = ur.role_id and ur.user_id = #{userId}")
     List<Role> findRoleByUserId(Long userId);
 }
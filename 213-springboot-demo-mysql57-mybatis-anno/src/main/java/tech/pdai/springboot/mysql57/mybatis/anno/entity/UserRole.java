@@ -0,0 +1,25 @@
+package tech.pdai.springboot.mysql57.mybatis.anno.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * row of tb_user_role joined with its role.
+ *
+ * @author pdai
+ */
+@Getter
+@Setter
+public class UserRole {
+
+    /**
+     * user id.
+     */
+    private Long userId;
+
+    /**
+     * role.
+     */
+    private Role role;
+
+}
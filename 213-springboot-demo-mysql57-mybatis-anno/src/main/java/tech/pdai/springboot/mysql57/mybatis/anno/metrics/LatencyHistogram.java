@@ -0,0 +1,132 @@
+package tech.pdai.springboot.mysql57.mybatis.anno.metrics;
+
+import lombok.Value;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock-free histogram of latencies in nanoseconds. each power of two is split into 8 buckets, so a percentile is
+ * off by at most 12.5%, and recording is a bucket index computed from the leading zeros plus an atomic increment.
+ *
+ * @author pdai
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * values below 8 have a bucket each, then 8 buckets for each power of two up to 2^62.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder total = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(index(value));
+        total.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return latencies recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return counts and percentiles at the time of the call, recordings that run concurrently may be missing
+     */
+    public Snapshot snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        long totalNanos = total.sum();
+        return new Snapshot(count, totalNanos / NANOS_PER_MILLI,
+                count == 0 ? 0 : totalNanos / NANOS_PER_MILLI / count,
+                percentile(snapshot, count, 0.5), percentile(snapshot, count, 0.95),
+                percentile(snapshot, count, 0.99), max.get() / NANOS_PER_MILLI);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @param index bucket
+     * @return largest value of the bucket
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static double percentile(long[] counts, long count, double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i) / NANOS_PER_MILLI;
+            }
+        }
+        return upperBound(counts.length - 1) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * latencies in milliseconds.
+     */
+    @Value
+    public static class Snapshot {
+
+        long count;
+
+        double totalMs;
+
+        double meanMs;
+
+        double p50Ms;
+
+        double p95Ms;
+
+        double p99Ms;
+
+        double maxMs;
+    }
+}
@@ -0,0 +1,83 @@
+package tech.pdai.springboot.mysql8.jpa.druid.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import tech.pdai.springboot.mysql8.jpa.druid.datasource.ReadYourWritesFilter;
+import tech.pdai.springboot.mysql8.jpa.druid.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * one primary and N replica pools behind a routing data source.
+ *
+ * @author pdai
+ */
+@Configuration
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfig {
+
+    /**
+     * url and credentials come from spring.datasource, filters are the ones of the druid starter.
+     *
+     * @return primary pool, configured by spring.datasource.druid
+     */
+    @Bean(initMethod = "init")
+    @ConfigurationProperties("spring.datasource.druid")
+    public DruidDataSource primaryDataSource() {
+        return DruidDataSourceBuilder.create().build();
+    }
+
+    /**
+     * replica pools are clones of the primary pool.
+     *
+     * @param primaryDataSource primary
+     * @param routing           replicas
+     * @return routing data source
+     */
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DruidDataSource primaryDataSource,
+                                                      RoutingDataSourceProperties routing) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < routing.getReplicas().size(); i++) {
+            RoutingDataSourceProperties.Replica replica = routing.getReplicas().get(i);
+            DruidDataSource dataSource = primaryDataSource.cloneDruidDataSource();
+            dataSource.setName(primaryDataSource.getName() + "-replica-" + i);
+            dataSource.setUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername());
+            dataSource.setPassword(replica.getPassword());
+            dataSource.setDefaultReadOnly(true);
+            replicas.add(dataSource);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+    }
+
+    /**
+     * the physical connection is fetched at the first statement, after the transaction is marked read-only.
+     *
+     * @param routingDataSource routing data source
+     * @return data source of jpa
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * @param routing routing properties
+     * @return filter opening a read-your-writes scope per request
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(RoutingDataSourceProperties routing) {
+        return new ReadYourWritesFilter(routing.isReadYourWrites());
+    }
+}
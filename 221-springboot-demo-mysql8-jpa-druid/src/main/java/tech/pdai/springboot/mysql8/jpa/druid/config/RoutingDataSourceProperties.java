@@ -0,0 +1,40 @@
+package tech.pdai.springboot.mysql8.jpa.druid.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * replicas of spring.datasource, pool settings are copied from the primary.
+ *
+ * @author pdai
+ */
+@Data
+@ConfigurationProperties("spring.datasource.routing")
+public class RoutingDataSourceProperties {
+
+    /**
+     * replicas, read-only transactions go to the primary when empty.
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * pin reads of a request to the primary after its first write, overridden by header X-Read-Your-Writes.
+     */
+    private boolean readYourWrites = true;
+
+    /**
+     * replica.
+     */
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,63 @@
+package tech.pdai.springboot.mysql8.jpa.druid.datasource;
+
+/**
+ * read-your-writes scope of the current thread: once a read-write transaction ran inside the scope, later
+ * read-only transactions of the scope go to the primary, so they see the write even if replicas lag behind.
+ * outside a scope reads always go to replicas.
+ *
+ * @author pdai
+ */
+public final class ReadYourWrites {
+
+    /**
+     * null outside a scope, true after a write inside the scope.
+     */
+    private static final ThreadLocal<Boolean> WRITTEN = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * begin a scope, usually one per request.
+     */
+    public static void begin() {
+        WRITTEN.set(Boolean.FALSE);
+    }
+
+    /**
+     * end the scope.
+     */
+    public static void end() {
+        WRITTEN.remove();
+    }
+
+    /**
+     * run in a scope.
+     *
+     * @param runnable runnable
+     */
+    public static void run(Runnable runnable) {
+        begin();
+        try {
+            runnable.run();
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * record a write, ignored outside a scope.
+     */
+    static void markWritten() {
+        if (WRITTEN.get() != null) {
+            WRITTEN.set(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return whether reads are pinned to the primary
+     */
+    public static boolean isPinned() {
+        return Boolean.TRUE.equals(WRITTEN.get());
+    }
+}
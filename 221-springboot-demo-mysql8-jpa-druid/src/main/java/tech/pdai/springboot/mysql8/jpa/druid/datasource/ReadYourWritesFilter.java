@@ -0,0 +1,53 @@
+package tech.pdai.springboot.mysql8.jpa.druid.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * opens a read-your-writes scope per request, header X-Read-Your-Writes overrides the default.
+ *
+ * @author pdai
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * header of per-request flag, true or false.
+     */
+    public static final String HEADER = "X-Read-Your-Writes";
+
+    /**
+     * scope opened when the header is absent.
+     */
+    private final boolean enabledByDefault;
+
+    /**
+     * init.
+     *
+     * @param enabledByDefault scope opened when the header is absent
+     */
+    public ReadYourWritesFilter(boolean enabledByDefault) {
+        this.enabledByDefault = enabledByDefault;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HEADER);
+        boolean enabled = header == null ? enabledByDefault : Boolean.parseBoolean(header);
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadYourWrites.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package tech.pdai.springboot.mysql8.jpa.druid.entity;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -21,7 +23,14 @@ public class Role implements BaseEntity {
      * role id.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "role_id_generator")
+    @GenericGenerator(name = "role_id_generator", strategy = "org.hibernate.id.enhanced.TableGenerator",
+            parameters = {
+                    @Parameter(name = "table_name", value = "tb_id_generator"),
+                    @Parameter(name = "segment_value", value = "tb_role"),
+                    @Parameter(name = "increment_size", value = "100"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -3,6 +3,8 @@ package tech.pdai.springboot.mysql8.jpa.druid.entity;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -22,7 +24,14 @@ public class User implements BaseEntity {
      * user id.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "user_id_generator")
+    @GenericGenerator(name = "user_id_generator", strategy = "org.hibernate.id.enhanced.TableGenerator",
+            parameters = {
+                    @Parameter(name = "table_name", value = "tb_id_generator"),
+                    @Parameter(name = "segment_value", value = "tb_user"),
+                    @Parameter(name = "increment_size", value = "100"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -5,22 +5,34 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
 import tech.pdai.springboot.mysql8.jpa.druid.dao.IBaseDao;
 import tech.pdai.springboot.mysql8.jpa.druid.entity.BaseEntity;
 import tech.pdai.springboot.mysql8.jpa.druid.service.IBaseService;
 
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
+ * reads run in read-only transactions and are routed to a replica, writes override it with read-write
+ * transactions on the primary.
+ *
  * @author pdai
  */
 @Slf4j
-@Transactional
+@Transactional(readOnly = true)
 public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializable> implements IBaseService<T, I> {
 
+    /**
+     * entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * @return IBaseDao
      */
@@ -136,6 +148,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entity entity
      */
     @Override
+    @Transactional
     public void save(T entity) {
         getBaseDao().save(entity);
     }
@@ -146,10 +159,38 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void save(List<T> entities) {
         getBaseDao().saveAll(entities);
     }
 
+    /**
+     * save in batch. ids come from the pooled-lo table generator so hibernate keeps jdbc batching, and the
+     * entities of each chunk are detached once flushed to keep memory flat for large imports. only the saved
+     * entities are detached, the rest of the caller's persistence context stays managed.
+     *
+     * @param entities  entities
+     * @param batchSize batch size
+     */
+    @Override
+    @Transactional
+    public void saveInBatch(List<T> entities, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        List<T> chunk = new ArrayList<>(Math.min(batchSize, entities.size()));
+        for (T entity : entities) {
+            chunk.add(getBaseDao().save(entity));
+            if (chunk.size() == batchSize) {
+                entityManager.flush();
+                chunk.forEach(entityManager::detach);
+                chunk.clear();
+            }
+        }
+        entityManager.flush();
+        chunk.forEach(entityManager::detach);
+    }
+
     /**
      * update.
      *
@@ -157,6 +198,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @return T
      */
     @Override
+    @Transactional
     public T update(T entity) {
         return getBaseDao().saveAndFlush(entity);
     }
@@ -167,6 +209,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param id id
      */
     @Override
+    @Transactional
     public void delete(I id) {
         getBaseDao().deleteById(id);
     }
@@ -177,6 +220,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param ids ids
      */
     @Override
+    @Transactional
     public void deleteByIds(List<I> ids) {
         getBaseDao().deleteAllById(ids);
     }
@@ -185,6 +229,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * delete all.
      */
     @Override
+    @Transactional
     public void deleteAll() {
         getBaseDao().deleteAllInBatch();
     }
@@ -195,6 +240,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void delete(T[] entities) {
         List<T> tList = Arrays.asList(entities);
         getBaseDao().deleteAll(tList);
@@ -206,6 +252,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void delete(Iterable<T> entities) {
         getBaseDao().deleteAll(entities);
     }
@@ -216,6 +263,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entity entity
      */
     @Override
+    @Transactional
     public void delete(T entity) {
         getBaseDao().delete(entity);
     }
@@ -243,6 +291,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * flush.
      */
     @Override
+    @Transactional
     public void flush() {
         getBaseDao().flush();
     }
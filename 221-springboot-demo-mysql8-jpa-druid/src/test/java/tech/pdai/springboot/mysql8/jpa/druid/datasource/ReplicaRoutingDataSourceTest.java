@@ -0,0 +1,124 @@
+package tech.pdai.springboot.mysql8.jpa.druid.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 读写分离路由测试
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+
+    private DataSource replica0;
+
+    private DataSource replica1;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = mock(DataSource.class);
+        replica0 = mock(DataSource.class);
+        replica1 = mock(DataSource.class);
+        when(primary.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        when(replica0.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        when(replica1.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        routingDataSource = new ReplicaRoutingDataSource(primary, Arrays.asList(replica0, replica1));
+        routingDataSource.afterPropertiesSet();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReadYourWrites.end();
+    }
+
+    @Test
+    void testReadOnlyGoesToLeastOutstandingReplica() throws Exception {
+        // 测试只读事务路由到未归还连接最少的从库
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        Connection first = routingDataSource.getConnection();
+        Connection second = routingDataSource.getConnection();
+        assertEquals(1, routingDataSource.getOutstanding().get("replica-0"));
+        assertEquals(1, routingDataSource.getOutstanding().get("replica-1"));
+
+        first.close();
+        // 重复close只计一次
+        first.close();
+        Connection third = routingDataSource.getConnection();
+        assertEquals(1, routingDataSource.getOutstanding().get("replica-0"));
+        assertEquals(1, routingDataSource.getOutstanding().get("replica-1"));
+
+        second.close();
+        third.close();
+        assertEquals(0, routingDataSource.getOutstanding().get("replica-0"));
+        assertEquals(0, routingDataSource.getOutstanding().get("replica-1"));
+    }
+
+    @Test
+    void testLeastOutstandingSkipsBusyReplica() throws Exception {
+        // 测试一个从库被占用时新连接都去另一个从库
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection held = routingDataSource.getConnection();
+        String busy = routingDataSource.getOutstanding().get("replica-0") == 1 ? "replica-0" : "replica-1";
+        String idle = "replica-0".equals(busy) ? "replica-1" : "replica-0";
+
+        for (int i = 0; i < 4; i++) {
+            routingDataSource.getConnection().close();
+            assertEquals(1, routingDataSource.getOutstanding().get(busy));
+            assertEquals(0, routingDataSource.getOutstanding().get(idle));
+        }
+        held.close();
+    }
+
+    @Test
+    void testReadWriteGoesToPrimary() throws Exception {
+        // 测试读写事务路由到主库
+        routingDataSource.getConnection().close();
+
+        verify(primary).getConnection();
+        assertEquals(0, routingDataSource.getOutstanding().get("replica-0"));
+        assertEquals(0, routingDataSource.getOutstanding().get("replica-1"));
+    }
+
+    @Test
+    void testReadYourWritesPinsReadsAfterWrite() throws Exception {
+        // 测试作用域内写入后的只读事务路由到主库
+        ReadYourWrites.begin();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        routingDataSource.getConnection().close();
+        assertFalse(ReadYourWrites.isPinned());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        routingDataSource.getConnection().close();
+        assertTrue(ReadYourWrites.isPinned());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        routingDataSource.getConnection().close();
+        verify(primary, times(2)).getConnection();
+    }
+
+    @Test
+    void testWriteOutsideScopeDoesNotPin() throws Exception {
+        // 测试作用域外的写入不影响之后的读
+        routingDataSource.getConnection().close();
+
+        assertFalse(ReadYourWrites.isPinned());
+    }
+}
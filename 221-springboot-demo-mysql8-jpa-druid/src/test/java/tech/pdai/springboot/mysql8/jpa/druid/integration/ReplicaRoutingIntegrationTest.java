@@ -0,0 +1,146 @@
+package tech.pdai.springboot.mysql8.jpa.druid.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import tech.pdai.springboot.mysql8.jpa.druid.datasource.ReadYourWrites;
+import tech.pdai.springboot.mysql8.jpa.druid.datasource.ReadYourWritesFilter;
+import tech.pdai.springboot.mysql8.jpa.druid.entity.User;
+import tech.pdai.springboot.mysql8.jpa.druid.service.IUserService;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 读写分离集成测试 - 主库和从库是两个独立的H2实例，之间没有复制，可以看出每次读写落在哪个库
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReplicaRoutingIntegrationTest {
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Value("${spring.datasource.routing.replicas[0].url}")
+    private String replicaUrl;
+
+    private JdbcTemplate primaryJdbc;
+
+    private JdbcTemplate replicaJdbc;
+
+    @BeforeEach
+    void setUp() {
+        primaryJdbc = new JdbcTemplate(primaryDataSource);
+        replicaJdbc = new JdbcTemplate(new DriverManagerDataSource(replicaUrl, "sa", ""));
+    }
+
+    @AfterEach
+    void tearDown() {
+        primaryJdbc.update("DELETE FROM tb_user");
+        replicaJdbc.update("DELETE FROM tb_user");
+    }
+
+    @Test
+    void testReadsGoToReplica() {
+        // 测试只读事务读取从库的数据
+        replicaJdbc.update("INSERT INTO tb_user (id, user_name, password, phone_number) VALUES (1000, 'replica', 'password', 1234567890)");
+
+        User user = userService.find(1000L);
+
+        assertNotNull(user);
+        assertEquals("replica", user.getUserName());
+        assertEquals(0, count(primaryJdbc));
+    }
+
+    @Test
+    void testWritesGoToPrimary() {
+        // 测试写入落在主库，复制延迟时从库读不到
+        User user = newUser();
+        userService.save(user);
+
+        assertEquals(1, count(primaryJdbc));
+        assertEquals(0, count(replicaJdbc));
+        assertNull(userService.find(user.getId()));
+    }
+
+    @Test
+    void testSaveInBatchWritesToPrimary() {
+        // 测试批量写入落在主库，主键由号段表分配
+        List<User> users = Arrays.asList(newUser(), newUser(), newUser());
+        userService.saveInBatch(users, 2);
+
+        assertTrue(users.stream().allMatch(user -> user.getId() != null));
+        assertEquals(3, count(primaryJdbc));
+        assertEquals(0, count(replicaJdbc));
+    }
+
+    @Test
+    void testReadYourWritesReadsPrimaryAfterWrite() {
+        // 测试作用域内写入之后的读取路由到主库
+        ReadYourWrites.run(() -> {
+            User user = newUser();
+            userService.save(user);
+
+            assertNotNull(userService.find(user.getId()));
+        });
+    }
+
+    @Test
+    void testAddReadsOwnWriteByDefault() throws Exception {
+        // 测试请求默认开启read-your-writes，新增后立即返回新用户
+        mockMvc.perform(post("/user/add")
+                .param("userName", "routing")
+                .param("password", "password"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.userName").value("routing"));
+    }
+
+    @Test
+    void testAddWithoutReadYourWrites() throws Exception {
+        // 测试请求头关闭read-your-writes后，新增后的读取去从库
+        mockMvc.perform(post("/user/add")
+                .header(ReadYourWritesFilter.HEADER, "false")
+                .param("userName", "routing")
+                .param("password", "password"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isEmpty());
+        assertEquals(1, count(primaryJdbc));
+    }
+
+    private static User newUser() {
+        User user = new User();
+        user.setUserName("routing");
+        user.setPassword("password");
+        user.setCreateTime(LocalDateTime.now());
+        user.setUpdateTime(LocalDateTime.now());
+        return user;
+    }
+
+    private static int count(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_user", Integer.class);
+    }
+}
@@ -0,0 +1,85 @@
+package tech.pdai.springboot.mysql8.jpa.hikari.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import tech.pdai.springboot.mysql8.jpa.hikari.datasource.ReadYourWritesFilter;
+import tech.pdai.springboot.mysql8.jpa.hikari.datasource.ReplicaRoutingDataSource;
+
+/**
+ * one primary and N replica pools behind a routing data source.
+ *
+ * @author pdai
+ */
+@Configuration
+@EnableConfigurationProperties(RoutingDataSourceProperties.class)
+public class RoutingDataSourceConfig {
+
+    /**
+     * @param properties spring.datasource
+     * @return primary pool, configured by spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * replica pools copy the settings of the primary pool.
+     *
+     * @param primaryDataSource primary
+     * @param routing           replicas
+     * @return routing data source
+     */
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                                      RoutingDataSourceProperties routing) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < routing.getReplicas().size(); i++) {
+            RoutingDataSourceProperties.Replica replica = routing.getReplicas().get(i);
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setPoolName(primaryDataSource.getPoolName() + "-replica-" + i);
+            config.setJdbcUrl(replica.getUrl());
+            config.setUsername(replica.getUsername());
+            config.setPassword(replica.getPassword());
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+    }
+
+    /**
+     * the physical connection is fetched at the first statement, after the transaction is marked read-only.
+     *
+     * @param routingDataSource routing data source
+     * @return data source of jpa
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * @param routing routing properties
+     * @return filter opening a read-your-writes scope per request
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(RoutingDataSourceProperties routing) {
+        return new ReadYourWritesFilter(routing.isReadYourWrites());
+    }
+}
@@ -0,0 +1,198 @@
+package tech.pdai.springboot.mysql8.jpa.hikari.datasource;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * routes read-only transactions to the replica with the least outstanding connections, everything else to the
+ * primary. the routing key is resolved when the physical connection is fetched, so this must be wrapped in a
+ * LazyConnectionDataSourceProxy: the read-only flag of the transaction is only known after it began.
+ *
+ * @author pdai
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    /**
+     * lookup key of primary.
+     */
+    public static final String PRIMARY = "primary";
+
+    /**
+     * replicas by lookup key.
+     */
+    private final Map<String, ReplicaDataSource> replicas = new LinkedHashMap<>();
+
+    /**
+     * start of the scan for the least outstanding replica, rotated so ties are spread.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * init.
+     *
+     * @param primary  primary
+     * @param replicas replicas, may be empty
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaDataSource replica = new ReplicaDataSource(replicas.get(i));
+            this.replicas.put("replica-" + i, replica);
+            targets.put("replica-" + i, replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * @return lookup key of current connection
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                ReadYourWrites.markWritten();
+            }
+            return PRIMARY;
+        }
+        if (replicas.isEmpty() || ReadYourWrites.isPinned()) {
+            return PRIMARY;
+        }
+        return leastOutstanding();
+    }
+
+    /**
+     * @return lookup key of the replica with the least outstanding connections
+     */
+    private String leastOutstanding() {
+        List<String> keys = new ArrayList<>(replicas.keySet());
+        int start = Math.floorMod(next.getAndIncrement(), keys.size());
+        String best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get((start + i) % keys.size());
+            int outstanding = replicas.get(key).outstanding.get();
+            if (outstanding < bestOutstanding) {
+                best = key;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return outstanding connections by replica lookup key
+     */
+    public Map<String, Integer> getOutstanding() {
+        Map<String, Integer> outstanding = new LinkedHashMap<>();
+        replicas.forEach((key, replica) -> outstanding.put(key, replica.outstanding.get()));
+        return Collections.unmodifiableMap(outstanding);
+    }
+
+    /**
+     * close the replica pools, the primary is a bean and closed by the container.
+     */
+    @Override
+    public void close() {
+        replicas.values().forEach(replica -> {
+            DataSource target = replica.getTargetDataSource();
+            if (target instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) target).close();
+                } catch (Exception e) {
+                    log.warn("close replica failed", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * replica counting its connections handed out and not closed yet.
+     */
+    private static final class ReplicaDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private ReplicaDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            outstanding.incrementAndGet();
+            try {
+                return track(obtainTargetDataSource().getConnection());
+            } catch (SQLException | RuntimeException e) {
+                outstanding.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            outstanding.incrementAndGet();
+            try {
+                return track(obtainTargetDataSource().getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                outstanding.decrementAndGet();
+                throw e;
+            }
+        }
+
+        /**
+         * @param target connection
+         * @return connection decrementing outstanding once on close
+         */
+        private Connection track(Connection target) {
+            AtomicBoolean closed = new AtomicBoolean();
+            InvocationHandler handler = (proxy, method, args) -> invoke(target, closed, proxy, method, args);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+
+        private Object invoke(Connection target, AtomicBoolean closed, Object proxy, Method method, Object[] args)
+                throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        outstanding.decrementAndGet();
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -12,6 +12,8 @@ import javax.persistence.Table;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 /**
  * @author pdai
@@ -27,7 +29,14 @@ public class Role implements BaseEntity {
      * role id.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "role_id_generator")
+    @GenericGenerator(name = "role_id_generator", strategy = "org.hibernate.id.enhanced.TableGenerator",
+            parameters = {
+                    @Parameter(name = "table_name", value = "tb_id_generator"),
+                    @Parameter(name = "segment_value", value = "tb_role"),
+                    @Parameter(name = "increment_size", value = "100"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     @Column(name = "id", nullable = false)
     private Long id;
 
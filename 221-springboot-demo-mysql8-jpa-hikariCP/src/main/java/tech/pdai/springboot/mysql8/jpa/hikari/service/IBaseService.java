@@ -92,6 +92,14 @@ public interface IBaseService<T, I extends Serializable> {
      */
     void save(List<T> entities);
 
+    /**
+     * save in jdbc batches, flushed every batchSize entities, the saved entities are detached once flushed.
+     *
+     * @param entities  entities
+     * @param batchSize batch size
+     */
+    void saveInBatch(List<T> entities, int batchSize);
+
     /**
      * update.
      *
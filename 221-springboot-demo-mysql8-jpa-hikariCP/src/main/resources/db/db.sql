@@ -95,6 +95,21 @@ LOCK TABLES `tb_user_role` WRITE;
 INSERT INTO `tb_user_role` VALUES (1,1);
 /*!40000 ALTER TABLE `tb_user_role` ENABLE KEYS */;
 UNLOCK TABLES;
+
+--
+-- Table structure for table `tb_id_generator`, ids of tb_user and tb_role are allocated in pooled-lo blocks
+-- so hibernate keeps jdbc batching for inserts
+--
+
+DROP TABLE IF EXISTS `tb_id_generator`;
+CREATE TABLE `tb_id_generator` (
+  `sequence_name` varchar(255) NOT NULL,
+  `next_val` bigint(20) DEFAULT NULL,
+  PRIMARY KEY (`sequence_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- the next block starts above the existing max ids
+INSERT INTO `tb_id_generator` VALUES ('tb_user',2),('tb_role',2);
 /*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;
 
 /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
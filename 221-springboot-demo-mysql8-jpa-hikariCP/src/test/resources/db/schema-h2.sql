@@ -0,0 +1,29 @@
+CREATE TABLE IF NOT EXISTS tb_role (
+  id bigint AUTO_INCREMENT PRIMARY KEY,
+  name varchar(255) NOT NULL,
+  role_key varchar(255) NOT NULL,
+  description varchar(255) DEFAULT NULL,
+  create_time timestamp DEFAULT NULL,
+  update_time timestamp DEFAULT NULL
+);
+
+CREATE TABLE IF NOT EXISTS tb_user (
+  id bigint AUTO_INCREMENT PRIMARY KEY,
+  user_name varchar(45) NOT NULL,
+  password varchar(45) NOT NULL,
+  email varchar(45) DEFAULT NULL,
+  phone_number bigint DEFAULT NULL,
+  description varchar(255) DEFAULT NULL,
+  create_time timestamp DEFAULT NULL,
+  update_time timestamp DEFAULT NULL
+);
+
+CREATE TABLE IF NOT EXISTS tb_user_role (
+  user_id bigint NOT NULL,
+  role_id bigint NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS tb_id_generator (
+  sequence_name varchar(255) PRIMARY KEY,
+  next_val bigint DEFAULT NULL
+);
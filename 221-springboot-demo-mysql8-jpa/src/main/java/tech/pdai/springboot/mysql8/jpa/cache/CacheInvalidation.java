@@ -0,0 +1,33 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * message on the invalidation channel, other nodes drop the key from their local cache.
+ *
+ * @author pdai
+ */
+@Getter
+@AllArgsConstructor
+public class CacheInvalidation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * node that published the message, it ignores its own messages.
+     */
+    private final String origin;
+
+    /**
+     * cache name.
+     */
+    private final String cacheName;
+
+    /**
+     * key, null for the whole cache.
+     */
+    private final Object key;
+}
@@ -0,0 +1,233 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * bounded in-process caffeine cache (L1) over redis (L2). reads fill L1 from L2 and L2 from the loader, writes
+ * go to both levels and are published so other nodes drop the key from their L1. L1 entries expire sooner than
+ * L2 ones, which bounds how long a node serves a value whose invalidation message it missed.
+ *
+ * @author pdai
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    /**
+     * keys deleted per round trip when clearing L2.
+     */
+    private static final int CLEAR_BATCH_SIZE = 1000;
+
+    private final String name;
+
+    private final Cache<Object, Object> local;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * prefix of redis keys of this cache.
+     */
+    private final String keyPrefix;
+
+    private final Duration timeToLive;
+
+    /**
+     * publishes an invalidation of a key, null for the whole cache.
+     */
+    private final Consumer<Object> invalidation;
+
+    /**
+     * latency of get with loader, by the level that answered.
+     */
+    private final Timer l1Hit;
+
+    private final Timer l2Hit;
+
+    private final Timer miss;
+
+    /**
+     * init.
+     *
+     * @param name          name
+     * @param local         L1
+     * @param redisTemplate L2
+     * @param keyPrefix     prefix of redis keys of all caches
+     * @param timeToLive    time to live of L2 entries
+     * @param invalidation  publisher of invalidations
+     * @param l1Hit         latency of get answered by L1
+     * @param l2Hit         latency of get answered by L2
+     * @param miss          latency of get answered by the loader
+     */
+    public TwoLevelCache(String name, Cache<Object, Object> local, RedisTemplate<String, Object> redisTemplate,
+                         String keyPrefix, Duration timeToLive, Consumer<Object> invalidation,
+                         Timer l1Hit, Timer l2Hit, Timer miss) {
+        super(true);
+        this.name = name;
+        this.local = local;
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix + name + "::";
+        this.timeToLive = timeToLive;
+        this.invalidation = invalidation;
+        this.l1Hit = l1Hit;
+        this.l2Hit = l2Hit;
+        this.miss = miss;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value == null) {
+            value = redisTemplate.opsForValue().get(redisKey(key));
+            if (value != null) {
+                local.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * concurrent loads of the same key on this node share one L2 read and one loader call.
+     *
+     * @param key         key
+     * @param valueLoader loader
+     * @param <T>         type of value
+     * @return value
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        long start = System.nanoTime();
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            l1Hit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return (T) fromStoreValue(value);
+        }
+        Timer[] timer = {l1Hit};
+        value = local.get(key, k -> {
+            Object remote = redisTemplate.opsForValue().get(redisKey(k));
+            if (remote != null) {
+                timer[0] = l2Hit;
+                return remote;
+            }
+            timer[0] = miss;
+            Object loaded;
+            try {
+                loaded = toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(k, valueLoader, e);
+            }
+            redisTemplate.opsForValue().set(redisKey(k), loaded, timeToLive);
+            return loaded;
+        });
+        timer[0].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        redisTemplate.opsForValue().set(redisKey(key), storeValue, timeToLive);
+        local.put(key, storeValue);
+        invalidation.accept(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        Boolean absent = redisTemplate.opsForValue().setIfAbsent(redisKey(key), storeValue, timeToLive);
+        if (Boolean.TRUE.equals(absent)) {
+            local.put(key, storeValue);
+            invalidation.accept(key);
+            return null;
+        }
+        return toValueWrapper(lookup(key));
+    }
+
+    /**
+     * L2 first, so a concurrent read can not refill L1 from the old L2 entry.
+     *
+     * @param key key
+     */
+    @Override
+    public void evict(Object key) {
+        redisTemplate.delete(redisKey(key));
+        local.invalidate(key);
+        invalidation.accept(key);
+    }
+
+    @Override
+    public void clear() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            clearRemote(connection);
+            return null;
+        });
+        local.invalidateAll();
+        invalidation.accept(null);
+    }
+
+    /**
+     * drop the key from L1 only, on invalidation from another node.
+     *
+     * @param key key
+     */
+    public void evictLocal(Object key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * drop L1 only, on invalidation from another node.
+     */
+    public void clearLocal() {
+        local.invalidateAll();
+    }
+
+    /**
+     * @param connection connection
+     */
+    private void clearRemote(RedisConnection connection) {
+        ScanOptions options = ScanOptions.scanOptions().match(keyPrefix + "*").count(CLEAR_BATCH_SIZE).build();
+        try (Cursor<byte[]> cursor = connection.scan(options)) {
+            List<byte[]> keys = new ArrayList<>(CLEAR_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() == CLEAR_BATCH_SIZE) {
+                    connection.del(keys.toArray(new byte[0][]));
+                    keys.clear();
+                }
+            }
+            if (!keys.isEmpty()) {
+                connection.del(keys.toArray(new byte[0][]));
+            }
+        }
+    }
+
+    /**
+     * @param key key
+     * @return redis key, keys must have a stable toString
+     */
+    private String redisKey(Object key) {
+        return keyPrefix + key;
+    }
+}
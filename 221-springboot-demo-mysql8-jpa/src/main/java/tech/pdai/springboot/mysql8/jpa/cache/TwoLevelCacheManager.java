@@ -0,0 +1,149 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * creates two-level caches on demand, all sharing one redis and one invalidation channel. caches are
+ * transaction aware: a put or evict inside a transaction runs after commit, so a concurrent reader can not
+ * cache the row again before the write is visible.
+ *
+ * @author pdai
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    /**
+     * id of this node on the invalidation channel.
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final String channel;
+
+    private final String keyPrefix;
+
+    private final long localMaximumSize;
+
+    private final Duration localExpireAfterWrite;
+
+    private final Duration timeToLive;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * undecorated caches by name, for invalidations from other nodes.
+     */
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * init.
+     *
+     * @param redisTemplate         redis template
+     * @param channel               invalidation channel
+     * @param keyPrefix             prefix of redis keys
+     * @param localMaximumSize      max entries of each L1 cache
+     * @param localExpireAfterWrite expiry of L1 entries
+     * @param timeToLive            time to live of L2 entries
+     * @param meterRegistry         meter registry
+     */
+    public TwoLevelCacheManager(RedisTemplate<String, Object> redisTemplate, String channel, String keyPrefix,
+                                long localMaximumSize, Duration localExpireAfterWrite, Duration timeToLive,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.keyPrefix = keyPrefix;
+        this.localMaximumSize = localMaximumSize;
+        this.localExpireAfterWrite = localExpireAfterWrite;
+        this.timeToLive = timeToLive;
+        this.meterRegistry = meterRegistry;
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    /**
+     * @param name name
+     * @return undecorated cache, null if not created on this node
+     */
+    public TwoLevelCache getTwoLevelCache(String name) {
+        return caches.get(name);
+    }
+
+    /**
+     * invalidation from another node.
+     *
+     * @param message message
+     * @param pattern pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof CacheInvalidation)) {
+            log.warn("unknown message on {}: {}", channel, body);
+            return;
+        }
+        CacheInvalidation invalidation = (CacheInvalidation) body;
+        TwoLevelCache cache = caches.get(invalidation.getCacheName());
+        if (nodeId.equals(invalidation.getOrigin()) || cache == null) {
+            return;
+        }
+        if (invalidation.getKey() == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.getKey());
+        }
+    }
+
+    /**
+     * @param name name
+     * @return cache
+     */
+    private TwoLevelCache createCache(String name) {
+        return new TwoLevelCache(name,
+                Caffeine.newBuilder()
+                        .maximumSize(localMaximumSize)
+                        .expireAfterWrite(localExpireAfterWrite)
+                        .build(),
+                redisTemplate, keyPrefix, timeToLive,
+                key -> redisTemplate.convertAndSend(channel, new CacheInvalidation(nodeId, name, key)),
+                timer(name, "l1"), timer(name, "l2"), timer(name, "miss"));
+    }
+
+    /**
+     * @param name   cache name
+     * @param result level that answered
+     * @return latency timer
+     */
+    private Timer timer(String name, String result) {
+        return Timer.builder("cache.two.level.get")
+                .description("Latency of cache get with loader")
+                .tag("cache", name)
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+}
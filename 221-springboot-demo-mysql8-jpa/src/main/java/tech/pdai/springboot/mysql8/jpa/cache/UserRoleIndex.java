@@ -0,0 +1,307 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * in-memory index of tb_user_role: user id -> sorted role ids, in an open addressing table of primitive arrays.
+ * hasRole is one hash probe plus a binary search over the roles of one user, it neither boxes nor allocates.
+ * readers do not block, writers are serialized and replace the role array of a user instead of changing it.
+ *
+ * @author pdai
+ */
+public final class UserRoleIndex {
+
+    private static final long[] NO_ROLES = new long[0];
+
+    /**
+     * tables are kept at most half full.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * user ids, the slot is free when its role array is null.
+     */
+    private long[] keys;
+
+    /**
+     * sorted role ids by slot.
+     */
+    private long[][] values;
+
+    private int size;
+
+    private long memberships;
+
+    /**
+     * init.
+     *
+     * @param expectedUsers expected number of users, avoids rehashing while loading
+     */
+    public UserRoleIndex(int expectedUsers) {
+        int capacity = tableSizeFor(Math.max(MIN_CAPACITY, expectedUsers * 2L));
+        this.keys = new long[capacity];
+        this.values = new long[capacity][];
+    }
+
+    /**
+     * @param userId user id
+     * @param roleId role id
+     * @return whether the user has the role
+     */
+    public boolean hasRole(long userId, long roleId) {
+        long stamp = lock.tryOptimisticRead();
+        boolean result = contains(userId, roleId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = contains(userId, roleId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param userId user id
+     * @return copy of the sorted role ids, empty if the user has no role
+     */
+    public long[] getRoleIds(long userId) {
+        long stamp = lock.readLock();
+        try {
+            int slot = find(userId);
+            return slot < 0 ? NO_ROLES : values[slot].clone();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * replace the roles of a user.
+     *
+     * @param userId  user id
+     * @param roleIds role ids, in any order
+     */
+    public void put(long userId, long[] roleIds) {
+        if (roleIds.length == 0) {
+            remove(userId);
+            return;
+        }
+        long[] sorted = roleIds.clone();
+        Arrays.sort(sorted);
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(userId);
+            if (slot >= 0) {
+                memberships += sorted.length - values[slot].length;
+                values[slot] = sorted;
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            insert(keys, values, userId, sorted);
+            size++;
+            memberships += sorted.length;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param userId user id
+     */
+    public void remove(long userId) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(userId);
+            if (slot >= 0) {
+                memberships -= values[slot].length;
+                size--;
+                delete(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * drop a role from every user, scans the whole table.
+     *
+     * @param roleId role id
+     */
+    public void removeRole(long roleId) {
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot < values.length; slot++) {
+                long[] roles = values[slot];
+                int index = roles == null ? -1 : Arrays.binarySearch(roles, roleId);
+                if (index < 0) {
+                    continue;
+                }
+                memberships--;
+                if (roles.length == 1) {
+                    size--;
+                    delete(slot);
+                    // an entry may have been shifted into this slot
+                    slot--;
+                    continue;
+                }
+                long[] remaining = new long[roles.length - 1];
+                System.arraycopy(roles, 0, remaining, 0, index);
+                System.arraycopy(roles, index + 1, remaining, index, remaining.length - index);
+                values[slot] = remaining;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * drop all users.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(keys, 0L);
+            Arrays.fill(values, null);
+            size = 0;
+            memberships = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return users with at least one role
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return user role pairs
+     */
+    public long memberships() {
+        long stamp = lock.readLock();
+        try {
+            return memberships;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * lookup without lock. under an optimistic read the arrays may be changed concurrently, so every index stays
+     * in bounds of the arrays actually read and the probe count is bounded; the caller discards the result if the
+     * read was not valid.
+     *
+     * @param userId user id
+     * @param roleId role id
+     * @return whether the user has the role
+     */
+    private boolean contains(long userId, long roleId) {
+        long[] keys = this.keys;
+        long[][] values = this.values;
+        int mask = Math.min(keys.length, values.length) - 1;
+        int slot = hash(userId) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long[] roles = values[slot];
+            if (roles == null) {
+                return false;
+            }
+            if (keys[slot] == userId) {
+                return Arrays.binarySearch(roles, roleId) >= 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param userId user id
+     * @return slot of the user, -1 if absent. callers hold a lock
+     */
+    private int find(long userId) {
+        int mask = keys.length - 1;
+        for (int slot = hash(userId) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == userId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * free a slot by shifting back the following entries of its probe sequence, linear probing needs no
+     * tombstones this way.
+     *
+     * @param slot slot
+     */
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // move the entry unless its home lies cyclically in (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = 0L;
+        values[free] = null;
+    }
+
+    /**
+     * @param capacity new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        long[] newKeys = new long[capacity];
+        long[][] newValues = new long[capacity][];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != null) {
+                insert(newKeys, newValues, keys[slot], values[slot]);
+            }
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+    private static void insert(long[] keys, long[][] values, long userId, long[] roles) {
+        int mask = keys.length - 1;
+        int slot = hash(userId) & mask;
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = userId;
+        values[slot] = roles;
+    }
+
+    /**
+     * ids from table generators are dense, spread them over the table.
+     *
+     * @param userId user id
+     * @return hash
+     */
+    private static int hash(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(long capacity) {
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("too many users: " + capacity / 2);
+        }
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+}
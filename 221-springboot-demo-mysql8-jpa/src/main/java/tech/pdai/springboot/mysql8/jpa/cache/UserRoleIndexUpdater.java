@@ -0,0 +1,174 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+
+import java.util.Collection;
+
+/**
+ * keeps the user role index in step with writes. changes of User.roles and deletes of users and roles are
+ * taken from hibernate events as they are flushed, and applied after commit so a rolled back write never
+ * reaches the index. set-based deletes bypass the session, the services report them here.
+ *
+ * @author pdai
+ */
+public class UserRoleIndexUpdater implements PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener, PostDeleteEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String USER_ROLES = User.class.getName() + ".roles";
+
+    private final transient UserRoleIndex index;
+
+    /**
+     * init.
+     *
+     * @param index index
+     */
+    public UserRoleIndexUpdater(UserRoleIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        putRoles(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        putRoles(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        if (isUserRoles(event)) {
+            long userId = (Long) event.getAffectedOwnerIdOrNull();
+            afterCommit(() -> index.remove(userId));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        long id = (Long) event.getId();
+        if (event.getEntity() instanceof User) {
+            afterCommit(() -> index.remove(id));
+        } else if (event.getEntity() instanceof Role) {
+            afterCommit(() -> index.removeRole(id));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * users deleted by a set-based delete.
+     *
+     * @param userIds user ids, null for all
+     */
+    public void usersDeleted(Collection<Long> userIds) {
+        afterCommit(() -> {
+            if (userIds == null) {
+                index.clear();
+            } else {
+                userIds.forEach(index::remove);
+            }
+        });
+    }
+
+    /**
+     * roles of a user written by a statement that bypasses the session, e.g. upsert.
+     *
+     * @param userId  user id
+     * @param roleIds role ids
+     */
+    public void rolesWritten(long userId, long[] roleIds) {
+        afterCommit(() -> index.put(userId, roleIds));
+    }
+
+    /**
+     * roles deleted by a set-based delete.
+     *
+     * @param roleIds role ids, null for all
+     */
+    public void rolesDeleted(Collection<Long> roleIds) {
+        afterCommit(() -> {
+            if (roleIds == null) {
+                index.clear();
+            } else {
+                roleIds.forEach(index::removeRole);
+            }
+        });
+    }
+
+    /**
+     * the role ids are read at flush, the collection may change again before commit.
+     *
+     * @param event event
+     */
+    private void putRoles(AbstractCollectionEvent event) {
+        if (!isUserRoles(event)) {
+            return;
+        }
+        long userId = (Long) event.getAffectedOwnerIdOrNull();
+        Collection<?> roles = (Collection<?>) event.getCollection();
+        long[] roleIds = new long[roles.size()];
+        int i = 0;
+        for (Object role : roles) {
+            roleIds[i++] = ((Role) role).getId();
+        }
+        afterCommit(() -> index.put(userId, roleIds));
+    }
+
+    /**
+     * a collection wrapped at this flush, e.g. the roles of a new user, gets its role only after the action, so
+     * the role is read from the collection entry of the session.
+     *
+     * @param event event
+     * @return whether the event is of User.roles
+     */
+    private static boolean isUserRoles(AbstractCollectionEvent event) {
+        if (event.getAffectedOwnerIdOrNull() == null) {
+            return false;
+        }
+        PersistentCollection collection = event.getCollection();
+        if (collection.getRole() != null) {
+            return USER_ROLES.equals(collection.getRole());
+        }
+        CollectionEntry entry = event.getSession().getPersistenceContext().getCollectionEntry(collection);
+        return entry != null && entry.getCurrentPersister() != null
+                && USER_ROLES.equals(entry.getCurrentPersister().getRole());
+    }
+
+    /**
+     * @param action runs after commit of the current transaction, or now if there is none
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
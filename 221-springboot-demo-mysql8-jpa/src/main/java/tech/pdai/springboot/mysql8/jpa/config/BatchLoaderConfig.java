@@ -0,0 +1,30 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * scheduler of micro-batched find by id.
+ *
+ * @author pdai
+ */
+@Configuration
+public class BatchLoaderConfig {
+
+    /**
+     * each running batch load holds one connection.
+     *
+     * @param poolSize pool size
+     * @return scheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler batchLoaderScheduler(@Value("${jpa.batch-loader.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("batch-loader-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,38 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * bounded executor for the count query of parallel paged reads.
+ *
+ * @author pdai
+ */
+@Configuration
+public class PagedQueryConfig {
+
+    /**
+     * keep pool size well below the connection pool size, each running task holds one connection.
+     *
+     * @param poolSize      pool size
+     * @param queueCapacity queue capacity
+     * @return executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor pagedQueryExecutor(@Value("${jpa.page.executor.pool-size:4}") int poolSize,
+                                                     @Value("${jpa.page.executor.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("paged-query-");
+        // saturated: the caller runs the count itself, i.e. falls back to sequential queries
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
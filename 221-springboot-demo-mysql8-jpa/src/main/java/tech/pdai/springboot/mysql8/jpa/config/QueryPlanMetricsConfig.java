@@ -0,0 +1,51 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * hibernate query plan cache metrics, hit and miss counters are bound by spring boot as
+ * hibernate.cache.query.plan when hibernate.generate_statistics is on (jpa.statistics.enabled), the hit ratio
+ * stays 0 otherwise.
+ *
+ * @author pdai
+ */
+@Configuration
+public class QueryPlanMetricsConfig {
+
+    /**
+     * @param entityManagerFactory entity manager factory
+     * @param maxSize              max size of query plan cache
+     * @return meter binder of query plan cache max size and hit ratio
+     */
+    @Bean
+    public MeterBinder queryPlanCacheMetrics(EntityManagerFactory entityManagerFactory,
+                                             @Value("${spring.jpa.properties.hibernate.query.plan_cache_max_size:2048}") int maxSize) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return registry -> {
+            Gauge.builder("hibernate.query.plan.cache.max.size", () -> maxSize)
+                    .description("The max number of query plans kept in cache")
+                    .register(registry);
+            Gauge.builder("hibernate.query.plan.cache.hit.ratio", statistics, QueryPlanMetricsConfig::hitRatio)
+                    .description("The ratio of query plans retrieved from cache")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * @param statistics statistics
+     * @return hit ratio
+     */
+    private static double hitRatio(Statistics statistics) {
+        long hits = statistics.getQueryPlanCacheHitCount();
+        long total = hits + statistics.getQueryPlanCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,86 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import tech.pdai.springboot.mysql8.jpa.cache.TwoLevelCacheManager;
+
+import java.time.Duration;
+
+/**
+ * opt-in application cache of find and findPage, caffeine in process over redis.
+ *
+ * @author pdai
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpa.cache.enabled", havingValue = "true")
+public class TwoLevelCacheConfig {
+
+    /**
+     * redis template. values are jdk-serialized: cached entities keep write-only json properties and pages
+     * have no json creator.
+     *
+     * @param factory factory
+     * @return RedisTemplate
+     */
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory factory) {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new JdkSerializationRedisSerializer());
+        template.setHashValueSerializer(new JdkSerializationRedisSerializer());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * cache manager.
+     *
+     * @param redisTemplate         redis template
+     * @param meterRegistry         meter registry
+     * @param channel               invalidation channel
+     * @param keyPrefix             prefix of redis keys
+     * @param localMaximumSize      max entries of each L1 cache
+     * @param localExpireAfterWrite expiry of L1 entries
+     * @param timeToLive            time to live of L2 entries
+     * @return cache manager
+     */
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry,
+                                             @Value("${jpa.cache.channel:jpa:cache:invalidation}") String channel,
+                                             @Value("${jpa.cache.key-prefix:jpa:cache:}") String keyPrefix,
+                                             @Value("${jpa.cache.local.maximum-size:10000}") long localMaximumSize,
+                                             @Value("${jpa.cache.local.expire-after-write:60s}") Duration localExpireAfterWrite,
+                                             @Value("${jpa.cache.time-to-live:10m}") Duration timeToLive) {
+        return new TwoLevelCacheManager(redisTemplate, channel, keyPrefix, localMaximumSize, localExpireAfterWrite,
+                timeToLive, meterRegistry);
+    }
+
+    /**
+     * subscribes the cache manager to invalidations of other nodes.
+     *
+     * @param factory      factory
+     * @param cacheManager cache manager
+     * @param channel      invalidation channel
+     * @return listener container
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory factory, TwoLevelCacheManager cacheManager,
+            @Value("${jpa.cache.channel:jpa:cache:invalidation}") String channel) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(channel));
+        return container;
+    }
+}
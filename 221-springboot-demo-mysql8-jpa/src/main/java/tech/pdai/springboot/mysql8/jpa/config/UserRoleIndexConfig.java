@@ -0,0 +1,134 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndex;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndexUpdater;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * opt-in in-memory index of tb_user_role for role checks, loaded on startup and updated by hibernate events.
+ *
+ * @author pdai
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "jpa.user-role-index.enabled", havingValue = "true")
+public class UserRoleIndexConfig {
+
+    /**
+     * rows fetched per round trip while loading, streamed with useCursorFetch on MySQL.
+     */
+    private static final int LOAD_FETCH_SIZE = 10000;
+
+    /**
+     * load tb_user_role ordered by user, so the roles of a user arrive together.
+     *
+     * @param dataSource    data source
+     * @param expectedUsers expected number of users
+     * @return index
+     */
+    @Bean
+    public UserRoleIndex userRoleIndex(DataSource dataSource,
+                                       @Value("${jpa.user-role-index.expected-users:100000}") int expectedUsers) {
+        UserRoleIndex index = new UserRoleIndex(expectedUsers);
+        long start = System.currentTimeMillis();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(LOAD_FETCH_SIZE);
+        IndexLoader loader = new IndexLoader(index);
+        jdbcTemplate.query("SELECT user_id, role_id FROM tb_user_role ORDER BY user_id", loader);
+        loader.flush();
+        log.info("user role index loaded, {} users, {} memberships in {} ms", index.size(), index.memberships(),
+                System.currentTimeMillis() - start);
+        return index;
+    }
+
+    /**
+     * registers the updater with hibernate.
+     *
+     * @param entityManagerFactory entity manager factory
+     * @param userRoleIndex        index
+     * @return updater
+     */
+    @Bean
+    public UserRoleIndexUpdater userRoleIndexUpdater(EntityManagerFactory entityManagerFactory,
+                                                     UserRoleIndex userRoleIndex) {
+        UserRoleIndexUpdater updater = new UserRoleIndexUpdater(userRoleIndex);
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, updater);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, updater);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, updater);
+        registry.appendListeners(EventType.POST_DELETE, updater);
+        return updater;
+    }
+
+    /**
+     * @param userRoleIndex index
+     * @return meter binder of index size
+     */
+    @Bean
+    public MeterBinder userRoleIndexMetrics(UserRoleIndex userRoleIndex) {
+        return registry -> {
+            Gauge.builder("jpa.user.role.index.users", userRoleIndex, UserRoleIndex::size)
+                    .description("Users in the user role index")
+                    .register(registry);
+            Gauge.builder("jpa.user.role.index.memberships", userRoleIndex, UserRoleIndex::memberships)
+                    .description("User role pairs in the user role index")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * collects the roles of one user at a time.
+     */
+    private static class IndexLoader implements RowCallbackHandler {
+
+        private final UserRoleIndex index;
+
+        private long userId;
+
+        private long[] roleIds = new long[16];
+
+        private int count;
+
+        IndexLoader(UserRoleIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long user = rs.getLong(1);
+            if (count > 0 && user != userId) {
+                flush();
+            }
+            if (count == roleIds.length) {
+                roleIds = Arrays.copyOf(roleIds, count * 2);
+            }
+            userId = user;
+            roleIds[count++] = rs.getLong(2);
+        }
+
+        void flush() {
+            if (count > 0) {
+                index.put(userId, Arrays.copyOf(roleIds, count));
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package tech.pdai.springboot.mysql8.jpa.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * scheduler of write-behind updates.
+ *
+ * @author pdai
+ */
+@Configuration
+public class WriteBehindConfig {
+
+    /**
+     * flushes of one buffer are serialized, one thread per buffer is enough.
+     *
+     * @return scheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler writeBehindScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("write-behind-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
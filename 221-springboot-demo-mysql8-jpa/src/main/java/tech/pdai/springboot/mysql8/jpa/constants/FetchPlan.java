@@ -0,0 +1,49 @@
+package tech.pdai.springboot.mysql8.jpa.constants;
+
+/**
+ * fetch plan of an entity, chosen by caller per query to load lazy associations. each entity declares its own
+ * plans, e.g. {@link UserFetchPlan}.
+ *
+ * @param <T> type of entity
+ * @author pdai
+ */
+public interface FetchPlan<T> {
+
+    /**
+     * @return named entity graph, used when loading a single entity, null to load none
+     */
+    String getEntityGraph();
+
+    /**
+     * @return lazy attribute, batch fetched when loading a list or page, null to fetch none
+     */
+    String getAttribute();
+
+    /**
+     * @param <T> type of entity
+     * @return plan that loads no lazy association, for entities without plans of their own
+     */
+    @SuppressWarnings("unchecked")
+    static <T> FetchPlan<T> none() {
+        return (FetchPlan<T>) None.INSTANCE;
+    }
+
+    /**
+     * plan that loads no lazy association.
+     */
+    enum None implements FetchPlan<Object> {
+
+        INSTANCE;
+
+        @Override
+        public String getEntityGraph() {
+            return null;
+        }
+
+        @Override
+        public String getAttribute() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package tech.pdai.springboot.mysql8.jpa.constants;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+
+/**
+ * fetch plans of {@link User}.
+ *
+ * @author pdai
+ */
+@Getter
+@AllArgsConstructor
+public enum UserFetchPlan implements FetchPlan<User> {
+
+    NONE(null, null),
+    WITH_ROLES("User.roles", "roles");
+
+    /**
+     * named entity graph, used when loading a single entity.
+     */
+    private final String entityGraph;
+
+    /**
+     * lazy attribute, batch fetched when loading a list or page.
+     */
+    private final String attribute;
+
+}
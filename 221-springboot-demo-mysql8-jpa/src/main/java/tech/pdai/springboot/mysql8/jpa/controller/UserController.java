@@ -6,12 +6,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.*;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
 import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.projection.UserSummary;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
 import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 import tech.pdai.springboot.mysql8.jpa.entity.response.ResponseResult;
 import tech.pdai.springboot.mysql8.jpa.service.IUserService;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * @author pdai
@@ -30,25 +35,43 @@ public class UserController {
     @ApiOperation("Add/Edit User")
     @PostMapping("add")
     public ResponseResult<User> add(User user) {
-        if (user.getId()==null || !userService.exists(user.getId())) {
-            user.setCreateTime(LocalDateTime.now());
-            user.setUpdateTime(LocalDateTime.now());
-            userService.save(user);
-        } else {
-            user.setUpdateTime(LocalDateTime.now());
-            userService.update(user);
-        }
-        return ResponseResult.success(userService.find(user.getId()));
+        // create time is kept on update, the column is not updatable
+        user.setCreateTime(LocalDateTime.now());
+        user.setUpdateTime(LocalDateTime.now());
+        return ResponseResult.success(userService.upsert(user, UserFetchPlan.WITH_ROLES));
     }
 
 
+    /**
+     * @return accepted, the update time is written later
+     */
+    @ApiOperation("Touch User")
+    @PostMapping("touch/{userId}")
+    public ResponseResult<Void> touch(@PathVariable("userId") Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        userService.updateBehind(userId, user -> {
+            user.setUpdateTime(now);
+            return user;
+        });
+        return ResponseResult.success();
+    }
+
     /**
      * @return user list
      */
     @ApiOperation("Query User One")
     @GetMapping("edit/{userId}")
     public ResponseResult<User> edit(@PathVariable("userId") Long userId) {
-        return ResponseResult.success(userService.find(userId));
+        return ResponseResult.success(userService.findBatched(userId, UserFetchPlan.WITH_ROLES));
+    }
+
+    /**
+     * @return users in the order of ids
+     */
+    @ApiOperation("Query User Batch")
+    @GetMapping("batch")
+    public ResponseResult<List<User>> batch(@RequestParam List<Long> ids) {
+        return ResponseResult.success(userService.findListBatched(ids, UserFetchPlan.WITH_ROLES));
     }
 
     /**
@@ -57,6 +80,24 @@ public class UserController {
     @ApiOperation("Query User Page")
     @GetMapping("list")
     public ResponseResult<Page<User>> list(@RequestParam int pageSize, @RequestParam int pageNumber) {
-        return ResponseResult.success(userService.findPage(UserQueryBean.builder().build(), PageRequest.of(pageNumber, pageSize)));
+        return ResponseResult.success(userService.findPage(UserQueryBean.builder().build(), PageRequest.of(pageNumber, pageSize), UserFetchPlan.WITH_ROLES));
+    }
+
+    /**
+     * @return user summary list
+     */
+    @ApiOperation("Query User Summary Page")
+    @GetMapping("summary")
+    public ResponseResult<Page<UserSummary>> summary(@RequestParam int pageSize, @RequestParam int pageNumber) {
+        return ResponseResult.success(userService.findPage(UserQueryBean.builder().build(), PageRequest.of(pageNumber, pageSize), UserSummary.class));
+    }
+
+    /**
+     * @return user slice
+     */
+    @ApiOperation("Scroll User by Cursor")
+    @GetMapping("scroll")
+    public ResponseResult<KeysetSlice<User>> scroll(@RequestParam(required = false) String cursor, @RequestParam int pageSize) {
+        return ResponseResult.success(userService.findSlice(UserQueryBean.builder().build(), KeysetCursor.decode(cursor), pageSize, UserFetchPlan.WITH_ROLES));
     }
 }
@@ -1,12 +1,42 @@
 package tech.pdai.springboot.mysql8.jpa.dao;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import tech.pdai.springboot.mysql8.jpa.entity.Role;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+
 /**
  * @author pdai
  */
 @Repository
 public interface IRoleDao extends IBaseDao<Role, Long> {
 
+    /**
+     * find page, cached in query region when second-level cache is enabled.
+     *
+     * @param spec     spec
+     * @param pageable pageable
+     * @return page
+     */
+    @Override
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "query-specification")})
+    Page<Role> findAll(Specification<Role> spec, Pageable pageable);
+
+    /**
+     * find list, cached in query region when second-level cache is enabled.
+     *
+     * @param spec spec
+     * @return list
+     */
+    @Override
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "query-specification")})
+    List<Role> findAll(Specification<Role> spec);
+
 }
@@ -3,6 +3,10 @@ package tech.pdai.springboot.mysql8.jpa.entity;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -15,13 +19,22 @@ import java.time.LocalDateTime;
 @ToString
 @Entity
 @Table(name = "tb_role")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "role")
 public class Role implements BaseEntity {
 
     /**
      * role id.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "role_id_generator")
+    @GenericGenerator(name = "role_id_generator", strategy = "org.hibernate.id.enhanced.TableGenerator",
+            parameters = {
+                    @Parameter(name = "table_name", value = "tb_id_generator"),
+                    @Parameter(name = "segment_value", value = "tb_role"),
+                    @Parameter(name = "increment_size", value = "100"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -41,8 +54,9 @@ public class Role implements BaseEntity {
     private String description;
 
     /**
-     * create date time.
+     * create date time, never overwritten by update or upsert.
      */
+    @Column(updatable = false)
     private LocalDateTime createTime;
 
     /**
@@ -50,4 +64,10 @@ public class Role implements BaseEntity {
      */
     private LocalDateTime updateTime;
 
+    /**
+     * version for optimistic locking.
+     */
+    @Version
+    private Long version;
+
 }
@@ -3,6 +3,11 @@ package tech.pdai.springboot.mysql8.jpa.entity;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -16,13 +21,21 @@ import java.util.Set;
 @ToString
 @Entity
 @Table(name = "tb_user")
+@NamedEntityGraph(name = "User.roles", attributeNodes = @NamedAttributeNode("roles"))
 public class User implements BaseEntity {
 
     /**
      * user id.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "user_id_generator")
+    @GenericGenerator(name = "user_id_generator", strategy = "org.hibernate.id.enhanced.TableGenerator",
+            parameters = {
+                    @Parameter(name = "table_name", value = "tb_id_generator"),
+                    @Parameter(name = "segment_value", value = "tb_user"),
+                    @Parameter(name = "increment_size", value = "100"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -52,8 +65,9 @@ public class User implements BaseEntity {
     private String description;
 
     /**
-     * create date time.
+     * create date time, never overwritten by update or upsert.
      */
+    @Column(updatable = false)
     private LocalDateTime createTime;
 
     /**
@@ -62,9 +76,18 @@ public class User implements BaseEntity {
     private LocalDateTime updateTime;
 
     /**
-     * join to role table.
+     * version for optimistic locking.
      */
-    @ManyToMany(cascade = {CascadeType.REFRESH}, fetch = FetchType.EAGER)
+    @Version
+    private Long version;
+
+    /**
+     * join to role table, lazy by default and batch fetched on demand.
+     */
+    @ToString.Exclude
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-roles")
+    @ManyToMany(cascade = {CascadeType.REFRESH}, fetch = FetchType.LAZY)
     @JoinTable(name = "tb_user_role", joinColumns = {
             @JoinColumn(name = "user_id")}, inverseJoinColumns = {@JoinColumn(name = "role_id")})
     private Set<Role> roles;
@@ -0,0 +1,25 @@
+package tech.pdai.springboot.mysql8.jpa.entity.projection;
+
+/**
+ * user columns for list screens.
+ *
+ * @author pdai
+ */
+public interface UserSummary {
+
+    /**
+     * @return user id
+     */
+    Long getId();
+
+    /**
+     * @return username
+     */
+    String getUserName();
+
+    /**
+     * @return email
+     */
+    String getEmail();
+
+}
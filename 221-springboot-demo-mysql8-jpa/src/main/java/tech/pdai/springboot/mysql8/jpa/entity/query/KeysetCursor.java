@@ -0,0 +1,83 @@
+package tech.pdai.springboot.mysql8.jpa.entity.query;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset (seek) cursor, encoded as an opaque token for clients.
+ *
+ * @author pdai
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class KeysetCursor {
+
+    private static final String NEXT = "n";
+
+    private static final String PREV = "p";
+
+    /**
+     * id of the boundary row, null for the first slice.
+     */
+    private final String key;
+
+    /**
+     * true to read rows after key, false to read rows before key.
+     */
+    private final boolean forward;
+
+    /**
+     * @return cursor of first slice
+     */
+    public static KeysetCursor first() {
+        return new KeysetCursor(null, true);
+    }
+
+    /**
+     * @param key id of last row in current slice
+     * @return cursor of next slice
+     */
+    public static KeysetCursor after(Object key) {
+        return new KeysetCursor(String.valueOf(key), true);
+    }
+
+    /**
+     * @param key id of first row in current slice
+     * @return cursor of previous slice
+     */
+    public static KeysetCursor before(Object key) {
+        return new KeysetCursor(String.valueOf(key), false);
+    }
+
+    /**
+     * decode opaque token, empty token means first slice.
+     *
+     * @param token token
+     * @return cursor
+     */
+    public static KeysetCursor decode(String token) {
+        if (StringUtils.isEmpty(token)) {
+            return first();
+        }
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int index = raw.indexOf(':');
+        if (index <= 0 || index == raw.length() - 1) {
+            throw new IllegalArgumentException("invalid cursor: " + token);
+        }
+        return new KeysetCursor(raw.substring(index + 1), NEXT.equals(raw.substring(0, index)));
+    }
+
+    /**
+     * @return opaque token
+     */
+    public String encode() {
+        String raw = (forward ? NEXT : PREV) + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
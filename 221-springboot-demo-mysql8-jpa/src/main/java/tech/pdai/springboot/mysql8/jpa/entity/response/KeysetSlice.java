@@ -0,0 +1,33 @@
+package tech.pdai.springboot.mysql8.jpa.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * slice of keyset pagination, no total count.
+ *
+ * @param <T> type of content
+ * @author pdai
+ */
+@Data
+@AllArgsConstructor
+public class KeysetSlice<T> {
+
+    /**
+     * content, ordered by id asc.
+     */
+    private List<T> content;
+
+    /**
+     * cursor of next slice, null if no more rows.
+     */
+    private String nextCursor;
+
+    /**
+     * cursor of previous slice, null if this is the first slice.
+     */
+    private String prevCursor;
+
+}
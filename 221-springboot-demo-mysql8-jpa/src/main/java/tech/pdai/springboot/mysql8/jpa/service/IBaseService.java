@@ -4,9 +4,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import tech.pdai.springboot.mysql8.jpa.constants.FetchPlan;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 /**
  * @author pdai
@@ -19,6 +26,31 @@ public interface IBaseService<T, I extends Serializable> {
      */
     T find(I id);
 
+    /**
+     * @param id        id
+     * @param fetchPlan fetch plan
+     * @return T
+     */
+    T find(I id, FetchPlan<T> fetchPlan);
+
+    /**
+     * find by id, concurrent calls within a short window are loaded together by one findAllById.
+     *
+     * @param id        id
+     * @param fetchPlan fetch plan
+     * @return T
+     */
+    T findBatched(I id, FetchPlan<T> fetchPlan);
+
+    /**
+     * find by ids through the batched loader.
+     *
+     * @param ids       ids
+     * @param fetchPlan fetch plan
+     * @return entities in the order of ids, null if not found
+     */
+    List<T> findListBatched(List<I> ids, FetchPlan<T> fetchPlan);
+
     /**
      * @return List
      */
@@ -42,6 +74,13 @@ public interface IBaseService<T, I extends Serializable> {
      */
     Page<T> findAll(Pageable pageable);
 
+    /**
+     * @param pageable  pageable
+     * @param fetchPlan fetch plan
+     * @return Page
+     */
+    Page<T> findAll(Pageable pageable, FetchPlan<T> fetchPlan);
+
     /**
      * @param spec     spec
      * @param pageable pageable
@@ -49,6 +88,72 @@ public interface IBaseService<T, I extends Serializable> {
      */
     Page<T> findAll(Specification<T> spec, Pageable pageable);
 
+    /**
+     * @param spec      spec
+     * @param pageable  pageable
+     * @param fetchPlan fetch plan
+     * @return Page
+     */
+    Page<T> findAll(Specification<T> spec, Pageable pageable, FetchPlan<T> fetchPlan);
+
+    /**
+     * find page, content and count run in parallel on two connections, count is skipped when the page is short.
+     *
+     * @param spec     spec
+     * @param pageable pageable
+     * @return Page
+     */
+    Page<T> findAllInParallel(Specification<T> spec, Pageable pageable);
+
+    /**
+     * find page of projection, only the projected columns are selected.
+     *
+     * @param spec       spec
+     * @param pageable   pageable
+     * @param projection closed interface projection or dto with constructor of projected properties
+     * @param <P>        type of projection
+     * @return Page
+     */
+    <P> Page<P> findAll(Specification<T> spec, Pageable pageable, Class<P> projection);
+
+    /**
+     * keyset pagination by id, no count query.
+     *
+     * @param spec   spec
+     * @param cursor cursor
+     * @param size   size
+     * @return slice
+     */
+    KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size);
+
+    /**
+     * keyset pagination by id with fetch plan, no count query.
+     *
+     * @param spec      spec
+     * @param cursor    cursor
+     * @param size      size
+     * @param fetchPlan fetch plan
+     * @return slice
+     */
+    KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size, FetchPlan<T> fetchPlan);
+
+    /**
+     * stream rows to consumer with constant memory.
+     *
+     * @param spec     spec
+     * @param consumer consumer
+     */
+    void stream(Specification<T> spec, Consumer<T> consumer);
+
+    /**
+     * stream rows with constant memory, must be consumed and closed inside the caller's transaction. streamed
+     * entities are detached as the stream moves on, the rest of the persistence context is kept.
+     *
+     * @param spec spec
+     * @return stream
+     */
+    Stream<T> stream(Specification<T> spec);
+
     /**
      * @param spec spec
      * @return T
@@ -92,6 +197,31 @@ public interface IBaseService<T, I extends Serializable> {
      */
     void save(List<T> entities);
 
+    /**
+     * save in jdbc batches, flushed every batchSize entities, the saved entities are detached once flushed.
+     *
+     * @param entities  entities
+     * @param batchSize batch size
+     */
+    void saveInBatch(List<T> entities, int batchSize);
+
+    /**
+     * insert the row if it does not exist, otherwise update it by id, in one statement. a null id is generated.
+     *
+     * @param entity entity
+     * @return entity with its id, the row is not read back
+     */
+    T upsert(T entity);
+
+    /**
+     * upsert, then read the row back with the fetch plan.
+     *
+     * @param entity    entity
+     * @param fetchPlan fetch plan of returned row
+     * @return persisted row
+     */
+    T upsert(T entity, FetchPlan<T> fetchPlan);
+
     /**
      * update.
      *
@@ -100,6 +230,29 @@ public interface IBaseService<T, I extends Serializable> {
      */
     T update(T entity);
 
+    /**
+     * read, mutate and write in a new transaction, retried with jittered backoff when a concurrent write wins.
+     *
+     * @param id       id
+     * @param mutation mutation of the managed entity
+     * @return updated entity, null if not found
+     */
+    T updateWithRetry(I id, UnaryOperator<T> mutation);
+
+    /**
+     * buffer the mutation and return, the entity is updated later. mutations of the same id pending together are
+     * composed and written once, pending mutations are written on shutdown.
+     *
+     * @param id       id
+     * @param mutation mutation of the managed entity
+     */
+    void updateBehind(I id, UnaryOperator<T> mutation);
+
+    /**
+     * write mutations buffered by updateBehind now.
+     */
+    void flushBehind();
+
     /**
      * delete.
      *
@@ -114,6 +267,31 @@ public interface IBaseService<T, I extends Serializable> {
      */
     void deleteByIds(List<I> ids);
 
+    /**
+     * set-based delete by ids, join table rows are deleted explicitly and no entity is loaded.
+     *
+     * @param ids ids
+     * @return deleted rows
+     */
+    int deleteByIdsInBatch(List<I> ids);
+
+    /**
+     * set-based delete, join table rows are deleted explicitly and no entity is loaded.
+     *
+     * @param entities entities
+     * @return deleted rows
+     */
+    int deleteInBatch(Iterable<T> entities);
+
+    /**
+     * set-based update of matched rows without loading entities.
+     *
+     * @param spec   spec, must not depend on the query argument
+     * @param values attribute name -> new value
+     * @return updated rows
+     */
+    int updateWhere(Specification<T> spec, Map<String, Object> values);
+
     /**
      * delete.
      *
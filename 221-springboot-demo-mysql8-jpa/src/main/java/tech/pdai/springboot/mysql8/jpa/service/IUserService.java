@@ -2,8 +2,11 @@ package tech.pdai.springboot.mysql8.jpa.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import tech.pdai.springboot.mysql8.jpa.constants.FetchPlan;
 import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
 import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 
 /**
  * @author pdai
@@ -19,4 +22,45 @@ public interface IUserService extends IBaseService<User, Long> {
      */
     Page<User> findPage(UserQueryBean userQueryBean, PageRequest pageRequest);
 
+    /**
+     * find by page with fetch plan.
+     *
+     * @param userQueryBean query
+     * @param pageRequest   pageRequest
+     * @param fetchPlan     fetch plan
+     * @return page
+     */
+    Page<User> findPage(UserQueryBean userQueryBean, PageRequest pageRequest, FetchPlan<User> fetchPlan);
+
+    /**
+     * find by page of projection.
+     *
+     * @param userQueryBean query
+     * @param pageRequest   pageRequest
+     * @param projection    projection
+     * @param <P>           type of projection
+     * @return page
+     */
+    <P> Page<P> findPage(UserQueryBean userQueryBean, PageRequest pageRequest, Class<P> projection);
+
+    /**
+     * find by keyset cursor.
+     *
+     * @param userQueryBean query
+     * @param cursor        cursor
+     * @param size          size
+     * @param fetchPlan     fetch plan
+     * @return slice
+     */
+    KeysetSlice<User> findSlice(UserQueryBean userQueryBean, KeysetCursor cursor, int size, FetchPlan<User> fetchPlan);
+
+    /**
+     * role check, answered from the user role index when it is enabled.
+     *
+     * @param userId user id
+     * @param roleId role id
+     * @return whether the user has the role
+     */
+    boolean hasRole(Long userId, Long roleId);
+
 }
@@ -1,26 +1,296 @@
 package tech.pdai.springboot.mysql8.jpa.service.impl;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.ReplicationMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.mapping.Column;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+import tech.pdai.springboot.mysql8.jpa.constants.FetchPlan;
 import tech.pdai.springboot.mysql8.jpa.dao.IBaseDao;
 import tech.pdai.springboot.mysql8.jpa.entity.BaseEntity;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 import tech.pdai.springboot.mysql8.jpa.service.IBaseService;
 
-import javax.transaction.Transactional;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.Id;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.Version;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.beans.PropertyDescriptor;
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * reads run in read-only transactions (hibernate read-only session, FlushMode.MANUAL and read-only jdbc
+ * connection), writes override it with read-write transactions.
+ *
  * @author pdai
  */
 @Slf4j
-@Transactional
+@Transactional(readOnly = true)
 public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializable> implements IBaseService<T, I> {
 
+    /**
+     * max ids in one IN (...) list.
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    /**
+     * suffix of the cache name of findPage results.
+     */
+    private static final String PAGE_CACHE_SUFFIX = ".page";
+
+    /**
+     * base and max of the backoff between retries of updateWithRetry, in milliseconds.
+     */
+    private static final long RETRY_BACKOFF_BASE_MILLIS = 5;
+
+    private static final long RETRY_BACKOFF_MAX_MILLIS = 500;
+
+    /**
+     * entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * rows per jdbc round trip when streaming, also the interval to clear the persistence context.
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.fetch_size:1000}")
+    private int streamFetchSize;
+
+    /**
+     * application cache of find and findPage, absent unless jpa.cache.enabled.
+     */
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    /**
+     * share one execution among concurrent identical reads, off by default.
+     */
+    @Value("${jpa.single-flight.enabled:false}")
+    private boolean singleFlightEnabled;
+
+    /**
+     * single-flight of reads, created on first use.
+     */
+    private volatile SingleFlight singleFlight;
+
+    /**
+     * window of batched find, in milliseconds.
+     */
+    @Value("${jpa.batch-loader.window-millis:2}")
+    private long batchWindowMillis;
+
+    /**
+     * max ids of batched find in one batch.
+     */
+    @Value("${jpa.batch-loader.max-batch-size:100}")
+    private int batchMaxSize;
+
+    /**
+     * scheduler of batched find.
+     */
+    @Autowired(required = false)
+    @Qualifier("batchLoaderScheduler")
+    private ThreadPoolTaskScheduler batchLoaderScheduler;
+
+    /**
+     * batch loaders of find by id, one per fetch plan.
+     */
+    private final Map<FetchPlan<T>, BatchLoader<I, T>> batchLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * max delay of a mutation buffered by updateBehind, in milliseconds.
+     */
+    @Value("${jpa.write-behind.flush-interval-millis:1000}")
+    private long writeBehindIntervalMillis;
+
+    /**
+     * ids written by updateBehind in one transaction.
+     */
+    @Value("${jpa.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+
+    /**
+     * max ids pending in updateBehind before callers write them.
+     */
+    @Value("${jpa.write-behind.capacity:10000}")
+    private int writeBehindCapacity;
+
+    /**
+     * scheduler of updateBehind flushes.
+     */
+    @Autowired(required = false)
+    @Qualifier("writeBehindScheduler")
+    private ThreadPoolTaskScheduler writeBehindScheduler;
+
+    /**
+     * buffer of updateBehind, created on first use.
+     */
+    private volatile WriteBehindBuffer<I, T> writeBehindBuffer;
+
+    /**
+     * max attempts of updateWithRetry.
+     */
+    @Value("${jpa.update.max-attempts:10}")
+    private int updateMaxAttempts;
+
+    /**
+     * run content and count of findPage in parallel.
+     */
+    @Value("${jpa.page.parallel-count:false}")
+    private boolean parallelCount;
+
+    /**
+     * bounded executor for count queries of parallel paged reads.
+     */
+    @Autowired(required = false)
+    @Qualifier("pagedQueryExecutor")
+    private Executor pagedQueryExecutor;
+
+    /**
+     * transaction manager, count queries of parallel paged reads run in their own transaction.
+     */
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * meter registry of paged query latency.
+     */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    /**
+     * projection factory for interface projections.
+     */
+    private final SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    /**
+     * rendered jpql of select and count of findPageByLike, keyed by active like attributes and sort.
+     */
+    private final Map<List<Object>, String[]> queryShapes = new ConcurrentHashMap<>();
+
+    /**
+     * entity class, resolved from generic type.
+     */
+    @SuppressWarnings("unchecked")
+    private final Class<T> entityClass = (Class<T>) GenericTypeResolver
+            .resolveTypeArguments(getClass(), BaseDoServiceImpl.class)[0];
+
+    /**
+     * id class, resolved from generic type.
+     */
+    @SuppressWarnings("unchecked")
+    private final Class<I> idClass = (Class<I>) GenericTypeResolver
+            .resolveTypeArguments(getClass(), BaseDoServiceImpl.class)[1];
+
+    /**
+     * id and version fields, read before the entity manager is involved to tell a detached entity from a new one.
+     */
+    private final Field idField = findAnnotatedField(entityClass, Id.class);
+
+    private final Field versionField = findAnnotatedField(entityClass, Version.class);
+
     /**
      * @return IBaseDao
      */
@@ -34,7 +304,228 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      */
     @Override
     public T find(I id) {
-        return getBaseDao().findById(id).orElse(null);
+        return cached(entityClass.getSimpleName(), id,
+                () -> singleFlight(Arrays.asList("find", id), () -> getBaseDao().findById(id).orElse(null)));
+    }
+
+    /**
+     * findById with fetch plan, associations are loaded in the same select by entity graph.
+     *
+     * @param id        id
+     * @param fetchPlan fetch plan
+     * @return T
+     */
+    @Override
+    public T find(I id, FetchPlan<T> fetchPlan) {
+        if (fetchPlan.getEntityGraph() == null) {
+            return find(id);
+        }
+        return singleFlight(Arrays.asList("find", id, fetchPlan), () -> entityManager.find(entityClass, id,
+                Collections.singletonMap(EntityGraph.EntityGraphType.FETCH.getKey(),
+                        entityManager.getEntityGraph(fetchPlan.getEntityGraph()))));
+    }
+
+    /**
+     * share one execution among concurrent identical reads. only calls that started their own read-only
+     * transaction take part: a caller with a transaction expects entities of its own persistence context, and a
+     * read inside a write must see that write. the shared result must be treated as read-only.
+     *
+     * @param key  key of method and arguments
+     * @param call call
+     * @param <V>  type of result
+     * @return result
+     */
+    protected <V> V singleFlight(Object key, Supplier<V> call) {
+        if (!singleFlightEnabled || !isNewReadOnlyTransaction()) {
+            return call.get();
+        }
+        SingleFlight flight = this.singleFlight;
+        if (flight == null) {
+            synchronized (this) {
+                flight = this.singleFlight;
+                if (flight == null) {
+                    String entity = entityClass.getSimpleName();
+                    flight = new SingleFlight(
+                            meterRegistry.counter("jpa.single.flight", "entity", entity, "result", "executed"),
+                            meterRegistry.counter("jpa.single.flight", "entity", entity, "result", "coalesced"));
+                    this.singleFlight = flight;
+                }
+            }
+        }
+        return flight.execute(key, call);
+    }
+
+    /**
+     * read through the application cache. like single-flight, only calls that started their own read-only
+     * transaction take part, and a cached result must be treated as read-only.
+     *
+     * @param cacheName cache name
+     * @param key       key
+     * @param loader    loader
+     * @param <V>       type of result
+     * @return result
+     */
+    protected <V> V cached(String cacheName, Object key, Supplier<V> loader) {
+        if (cacheManager == null || !isNewReadOnlyTransaction()) {
+            return loader.get();
+        }
+        return cacheManager.getCache(cacheName).get(key, loader::get);
+    }
+
+    /**
+     * evict written ids from the application cache and clear the cached pages. inside a transaction the
+     * eviction runs after commit, so a concurrent reader can not cache the old row again before the write is
+     * visible.
+     *
+     * @param ids written ids, null to clear all
+     */
+    protected void evictCached(Collection<?> ids) {
+        if (cacheManager == null) {
+            return;
+        }
+        List<Object> evicted = ids == null ? null : new ArrayList<>(ids);
+        afterCommit(() -> {
+            Cache cache = getTargetCache(entityClass.getSimpleName());
+            if (evicted == null) {
+                cache.clear();
+            } else {
+                evicted.forEach(cache::evict);
+            }
+            getTargetCache(entityClass.getSimpleName() + PAGE_CACHE_SUFFIX).clear();
+        });
+    }
+
+    /**
+     * evict written entities from the application cache, their ids are only read when the cache is on.
+     *
+     * @param entities written entities
+     */
+    private void evictCachedEntities(Iterable<T> entities) {
+        if (cacheManager == null) {
+            return;
+        }
+        List<Object> ids = new ArrayList<>();
+        entities.forEach(entity -> ids.add(getId(entity)));
+        evictCached(ids);
+    }
+
+    /**
+     * clear cached pages of an entity, e.g. of the other side of an association. inside a transaction the
+     * pages are cleared after commit.
+     *
+     * @param entity entity class
+     */
+    protected void clearCachedPages(Class<?> entity) {
+        if (cacheManager != null) {
+            afterCommit(() -> getTargetCache(entity.getSimpleName() + PAGE_CACHE_SUFFIX).clear());
+        }
+    }
+
+    /**
+     * a transaction aware cache called after commit would register yet another synchronization, which never
+     * runs, so evictions go to the cache it decorates.
+     *
+     * @param name cache name
+     * @return undecorated cache
+     */
+    private Cache getTargetCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        return cache instanceof TransactionAwareCacheDecorator
+                ? ((TransactionAwareCacheDecorator) cache).getTargetCache() : cache;
+    }
+
+    /**
+     * @param action runs after commit of the current transaction, or now if there is none
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * @return whether the current transaction is read-only and was started for this call
+     */
+    private static boolean isNewReadOnlyTransaction() {
+        try {
+            return TransactionAspectSupport.currentTransactionStatus().isNewTransaction()
+                    && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        } catch (NoTransactionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * find by id through the batch loader, no transaction is held while waiting for the batch.
+     *
+     * @param id        id
+     * @param fetchPlan fetch plan
+     * @return T
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public T findBatched(I id, FetchPlan<T> fetchPlan) {
+        return join(loadBatched(id, fetchPlan));
+    }
+
+    /**
+     * @param ids       ids
+     * @param fetchPlan fetch plan
+     * @return entities in the order of ids, null if not found
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<T> findListBatched(List<I> ids, FetchPlan<T> fetchPlan) {
+        List<CompletableFuture<T>> futures = ids.stream().map(id -> loadBatched(id, fetchPlan))
+                .collect(Collectors.toList());
+        return futures.stream().map(BaseDoServiceImpl::join).collect(Collectors.toList());
+    }
+
+    /**
+     * @param id        id
+     * @param fetchPlan fetch plan
+     * @return future of entity
+     */
+    private CompletableFuture<T> loadBatched(I id, FetchPlan<T> fetchPlan) {
+        if (batchLoaderScheduler == null || transactionManager == null) {
+            return CompletableFuture.completedFuture(find(id, fetchPlan));
+        }
+        return batchLoaders.computeIfAbsent(fetchPlan, plan -> new BatchLoader<>(ids -> loadBatch(ids, plan),
+                batchLoaderScheduler, batchWindowMillis, batchMaxSize,
+                DistributionSummary.builder("jpa.batch.loader.size")
+                        .description("Ids loaded by one batched find")
+                        .tag("entity", entityClass.getSimpleName())
+                        .tag("fetchPlan", plan.toString())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)))
+                .load(id);
+    }
+
+    /**
+     * @param ids       ids
+     * @param fetchPlan fetch plan
+     * @return entity by id
+     */
+    @SuppressWarnings("unchecked")
+    private Map<I, T> loadBatch(List<I> ids, FetchPlan<T> fetchPlan) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> {
+            Map<I, T> entities = new HashMap<>(ids.size() * 2);
+            for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+                List<I> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+                getBaseDao().findAllById(chunk).forEach(entity -> entities.put((I) getId(entity), entity));
+            }
+            fetch(entities.values(), fetchPlan);
+            return entities;
+        });
     }
 
     /**
@@ -78,6 +569,77 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
         return getBaseDao().findAll(spec, sort);
     }
 
+    /**
+     * stream rows to consumer with constant memory.
+     *
+     * @param spec     spec
+     * @param consumer consumer
+     */
+    @Override
+    public void stream(Specification<T> spec, Consumer<T> consumer) {
+        try (Stream<T> stream = stream(spec)) {
+            stream.forEach(consumer);
+        }
+    }
+
+    /**
+     * stream rows with a forward-only cursor, entities are read-only and detached every fetch size rows. only the
+     * streamed entities are detached, entities the caller had in its persistence context before stay managed,
+     * together with whatever the consumer loads through their associations. the cursor and the entities belong
+     * to the caller's persistence context, so the stream must be consumed and closed inside the caller's
+     * transaction, MySQL also needs useCursorFetch=true for the fetch size to take effect.
+     *
+     * @param spec spec
+     * @return stream
+     */
+    @Override
+    public Stream<T> stream(Specification<T> spec) {
+        int fetchSize = streamFetchSize > 0 ? streamFetchSize : 1000;
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entityClass);
+        Root<T> root = query.from(entityClass);
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root);
+
+        // a row the caller has already loaded comes back as the caller's instance, which must not be detached
+        Set<Object> managedBefore = Collections.newSetFromMap(new IdentityHashMap<>());
+        managedBefore.addAll(entityManager.unwrap(SharedSessionContractImplementor.class).getPersistenceContext()
+                .getEntitiesByKey().values());
+        ScrollableResults results = entityManager.createQuery(query)
+                .unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+            private final List<T> streamed = new ArrayList<>(fetchSize);
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean tryAdvance(Consumer<? super T> action) {
+                // rows handed out before are done, detach them before loading the next one
+                if (streamed.size() == fetchSize) {
+                    streamed.forEach(entityManager::detach);
+                    streamed.clear();
+                }
+                if (!results.next()) {
+                    return false;
+                }
+                T entity = (T) results.get(0);
+                if (!managedBefore.contains(entity)) {
+                    streamed.add(entity);
+                }
+                action.accept(entity);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(results::close);
+    }
+
     /**
      * find one.
      *
@@ -98,6 +660,18 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
         return getBaseDao().findAll(pageable);
     }
 
+    /**
+     * @param pageable  pageable
+     * @param fetchPlan fetch plan
+     * @return Page
+     */
+    @Override
+    public Page<T> findAll(Pageable pageable, FetchPlan<T> fetchPlan) {
+        Page<T> page = getBaseDao().findAll(pageable);
+        fetch(page.getContent(), fetchPlan);
+        return page;
+    }
+
     /**
      * count.
      *
@@ -127,7 +701,7 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      */
     @Override
     public boolean exists(I id) {
-        return getBaseDao().findById(id).isPresent();
+        return getBaseDao().existsById(id);
     }
 
     /**
@@ -136,8 +710,13 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entity entity
      */
     @Override
+    @Transactional
     public void save(T entity) {
-        getBaseDao().save(entity);
+        if (toManaged(entity) == null) {
+            getBaseDao().save(entity);
+        }
+        evictCache();
+        evictCachedEntities(Collections.singletonList(entity));
     }
 
     /**
@@ -146,8 +725,411 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void save(List<T> entities) {
         getBaseDao().saveAll(entities);
+        evictCache();
+        evictCachedEntities(entities);
+    }
+
+    /**
+     * save in batch. ids come from the pooled-lo table generator so hibernate keeps jdbc batching, and the
+     * entities of each chunk are detached once flushed to keep memory flat for large imports. only the saved
+     * entities are detached, the rest of the caller's persistence context stays managed.
+     *
+     * @param entities  entities
+     * @param batchSize batch size
+     */
+    @Override
+    @Transactional
+    public void saveInBatch(List<T> entities, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        List<T> chunk = new ArrayList<>(Math.min(batchSize, entities.size()));
+        for (T entity : entities) {
+            chunk.add(getBaseDao().save(entity));
+            if (chunk.size() == batchSize) {
+                entityManager.flush();
+                chunk.forEach(entityManager::detach);
+                chunk.clear();
+            }
+        }
+        entityManager.flush();
+        chunk.forEach(entityManager::detach);
+        evictCache();
+        evictCachedEntities(entities);
+    }
+
+    /**
+     * upsert by {@code ON DUPLICATE KEY UPDATE} on MySQL, {@code ON CONFLICT} on PostgreSQL and {@code MERGE} on H2,
+     * one statement whether the row exists or not. the id sent by the client is kept, a null id is taken from the
+     * id generator. only basic columns are written, columns mapped with updatable = false keep their value on
+     * update and the version, if any, starts from the seed on insert and is incremented on update. the version sent
+     * by the client is checked like an update, a stale one throws OptimisticLockException, a null one skips the
+     * check and the row is overwritten. owned many-to-many associations that are set, e.g. User.roles bound from a
+     * request with only their ids, replace the join table rows of the id by one delete and one jdbc batch of
+     * inserts, an element id that does not exist fails on the foreign key.
+     *
+     * @param entity entity
+     * @return entity with its id, and its version if the client sent one; the row is not read back
+     */
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public T upsert(T entity) {
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class);
+        AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory.getMetamodel()
+                .entityPersister(entityClass);
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        I id = (I) getId(entity);
+        if (id == null) {
+            id = (I) persister.getIdentifierGenerator().generate(session, entity);
+            persister.setIdentifier(entity, id, session);
+        }
+        Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+        if (!(dialect instanceof MySQLDialect || dialect instanceof PostgreSQL81Dialect
+                || dialect instanceof H2Dialect)) {
+            return upsertManaged(entity, id, persister, session);
+        }
+
+        List<String> columns = new ArrayList<>();
+        List<String> updateColumns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<Type> types = new ArrayList<>();
+        columns.add(persister.getIdentifierColumnNames()[0]);
+        values.add(id);
+        types.add(persister.getIdentifierType());
+        Type[] propertyTypes = persister.getPropertyTypes();
+        boolean[] propertyUpdateability = persister.getPropertyUpdateability();
+        String versionColumn = null;
+        Object version = null;
+        for (int i = 0; i < propertyTypes.length; i++) {
+            if (propertyTypes[i].isAssociationType()) {
+                continue;
+            }
+            String column = persister.getPropertyColumnNames(i)[0];
+            columns.add(column);
+            // read field by field, the lazy attribute check of getPropertyValues needs a managed entity
+            Object value = persister.getPropertyValue(entity, i);
+            types.add(propertyTypes[i]);
+            if (persister.isVersioned() && i == persister.getVersionProperty()) {
+                // a new row starts from the seed, an existing row is incremented
+                versionColumn = column;
+                version = value;
+                value = value != null ? value : persister.getVersionType().seed(session);
+            } else if (propertyUpdateability[i]) {
+                updateColumns.add(column);
+            }
+            values.add(value);
+        }
+
+        // h2 can not infer the type of a parameter selected in MERGE ... USING
+        List<String> castTypes = types.stream().map(type -> dialect.getTypeName(type.sqlTypes(sessionFactory)[0],
+                Integer.MAX_VALUE, Column.DEFAULT_PRECISION, Column.DEFAULT_SCALE)).collect(Collectors.toList());
+        NativeQuery<?> query = entityManager.createNativeQuery(buildUpsertSql(dialect, persister.getTableName(),
+                columns, castTypes, updateColumns, versionColumn, version != null))
+                .unwrap(NativeQuery.class);
+        query.addSynchronizedEntityClass(entityClass);
+        for (int i = 0; i < values.size(); i++) {
+            query.setParameter(i + 1, values.get(i), types.get(i));
+        }
+        int rows = query.executeUpdate();
+        // a client that sends a version expects the row to exist. the guarded mysql update reports 2 rows, an
+        // insert or a stale version less; the other databases report 0 rows only for a stale version
+        if (version != null && (dialect instanceof MySQLDialect ? rows != 2 : rows == 0)) {
+            throw new OptimisticLockException("stale version " + version + " of " + entityClass.getSimpleName()
+                    + " " + id);
+        }
+        writeAssociations(entity, id, persister, session);
+
+        // drop a stale managed copy, if any, without hitting the database
+        Object stale = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+        if (stale != null) {
+            entityManager.detach(stale);
+        }
+        if (version != null) {
+            persister.setPropertyValue(entity, persister.getVersionProperty(),
+                    persister.getVersionType().next(version, session));
+        }
+        evictCache();
+        evictCached(Collections.singletonList(id));
+        return entity;
+    }
+
+    /**
+     * upsert, then read the row back with the fetch plan.
+     *
+     * @param entity    entity
+     * @param fetchPlan fetch plan of returned row
+     * @return persisted row, read by one more select
+     */
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public T upsert(T entity, FetchPlan<T> fetchPlan) {
+        T written = upsert(entity);
+        return find((I) getId(written), fetchPlan);
+    }
+
+    /**
+     * replace the join table rows of the owned many-to-many associations that are set on a detached entity, one
+     * delete by the owner id and the inserts in one jdbc batch.
+     *
+     * @param entity    detached entity
+     * @param id        id
+     * @param persister persister
+     * @param session   session
+     */
+    private void writeAssociations(T entity, I id, AbstractEntityPersister persister,
+                                   SharedSessionContractImplementor session) {
+        Type[] propertyTypes = persister.getPropertyTypes();
+        for (int i = 0; i < propertyTypes.length; i++) {
+            if (!propertyTypes[i].isCollectionType()) {
+                continue;
+            }
+            AbstractCollectionPersister collectionPersister = (AbstractCollectionPersister) session.getFactory()
+                    .getMetamodel().collectionPersister(((CollectionType) propertyTypes[i]).getRole());
+            Object value = persister.getPropertyValue(entity, i);
+            if (!collectionPersister.isManyToMany() || !isOwnedJoinTable(collectionPersister)
+                    || !(value instanceof Collection) || value instanceof PersistentCollection) {
+                continue;
+            }
+            EntityPersister elementPersister = collectionPersister.getElementPersister();
+            List<Serializable> elementIds = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                Serializable elementId = elementPersister.getIdentifier(element, session);
+                if (elementId == null) {
+                    throw new EntityNotFoundException(elementPersister.getMappedClass().getSimpleName()
+                            + " without id");
+                }
+                elementIds.add(elementId);
+            }
+            String table = collectionPersister.getTableName();
+            String keyColumn = collectionPersister.getKeyColumnNames()[0];
+            String elementColumn = collectionPersister.getElementColumnNames()[0];
+            Type keyType = collectionPersister.getKeyType();
+            Type elementIdType = elementPersister.getIdentifierType();
+            // through hibernate, so the collection cache and the cached queries of the join table are invalidated
+            entityManager.createNativeQuery("DELETE FROM " + table + " WHERE " + keyColumn + " = ?")
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedQuerySpace(table)
+                    .setParameter(1, id, keyType)
+                    .executeUpdate();
+            if (elementIds.isEmpty()) {
+                continue;
+            }
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " ("
+                        + keyColumn + ", " + elementColumn + ") VALUES (?, ?)")) {
+                    for (Serializable elementId : elementIds) {
+                        keyType.nullSafeSet(insert, id, 1, session);
+                        elementIdType.nullSafeSet(insert, elementId, 2, session);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * upsert through the session on a dialect without an upsert statement: a missing row is inserted with the id
+     * of the client by replicate, an existing row is written through the managed entity, the join table rows of
+     * the associations by hibernate and the version is incremented once for both.
+     *
+     * @param entity    detached entity
+     * @param id        id
+     * @param persister persister
+     * @param session   session
+     * @return persisted row
+     */
+    private T upsertManaged(T entity, I id, AbstractEntityPersister persister,
+                            SharedSessionContractImplementor session) {
+        List<Integer> associations = resolveAssociations(entity, persister, session);
+        T managed = entityManager.find(entityClass, id);
+        if (managed == null) {
+            // persist would hand the row to the id generator
+            entityManager.unwrap(Session.class).replicate(entity, ReplicationMode.EXCEPTION);
+            managed = entity;
+        } else {
+            if (persister.isVersioned()) {
+                Object version = persister.getPropertyValue(entity, persister.getVersionProperty());
+                if (version != null && !version.equals(persister.getVersion(managed))) {
+                    throw new OptimisticLockException("stale version " + version + " of "
+                            + entityClass.getSimpleName() + " " + id, null, managed);
+                }
+            }
+            copyProperties(entity, managed, persister, associations);
+        }
+        entityManager.flush();
+        evictCache();
+        evictCached(Collections.singletonList(id));
+        return managed;
+    }
+
+    /**
+     * spring data takes an entity whose version is null for new and persists it, which fails for a detached entity
+     * with an id, e.g. one bound from a request without its version. the row is loaded and the properties are
+     * copied onto it instead, like an update without the version check.
+     *
+     * @param entity entity
+     * @return managed row with the properties of entity, null if entity is new, has a version or its row is gone
+     */
+    @SuppressWarnings("unchecked")
+    private T toManaged(T entity) {
+        if (versionField == null || idField == null) {
+            return null;
+        }
+        I id = (I) ReflectionUtils.getField(idField, entity);
+        if (id == null || ReflectionUtils.getField(versionField, entity) != null) {
+            return null;
+        }
+        T managed = getBaseDao().findById(id).orElse(null);
+        if (managed == null || managed == entity) {
+            return null;
+        }
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(entityClass);
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        copyProperties(entity, managed, persister, resolveAssociations(entity, persister, session));
+        return managed;
+    }
+
+    /**
+     * copy the updatable basic properties and the given associations of a detached entity onto the managed one,
+     * the version is left to hibernate.
+     *
+     * @param entity       detached entity
+     * @param managed      managed entity
+     * @param persister    persister
+     * @param associations indexes of the owned many-to-many properties to copy
+     */
+    private void copyProperties(T entity, T managed, AbstractEntityPersister persister, List<Integer> associations) {
+        // through the setters, the enhanced dirty tracking does not see fields written by the persister
+        BeanWrapperImpl source = new BeanWrapperImpl(entity);
+        BeanWrapperImpl target = new BeanWrapperImpl(managed);
+        Type[] propertyTypes = persister.getPropertyTypes();
+        boolean[] propertyUpdateability = persister.getPropertyUpdateability();
+        for (int i = 0; i < propertyTypes.length; i++) {
+            boolean basic = !propertyTypes[i].isAssociationType() && propertyUpdateability[i]
+                    && !(persister.isVersioned() && i == persister.getVersionProperty());
+            if (basic || associations.contains(i)) {
+                String property = persister.getPropertyNames()[i];
+                target.setPropertyValue(property, source.getPropertyValue(property));
+            }
+        }
+    }
+
+    /**
+     * replace the elements of the owned many-to-many associations that are set on a detached entity, e.g. roles
+     * bound from a request with only their ids, by the loaded entities.
+     *
+     * @param entity    detached entity
+     * @param persister persister
+     * @param session   session
+     * @return indexes of the resolved properties
+     */
+    private List<Integer> resolveAssociations(T entity, AbstractEntityPersister persister,
+                                              SharedSessionContractImplementor session) {
+        List<Integer> resolved = new ArrayList<>();
+        Type[] propertyTypes = persister.getPropertyTypes();
+        for (int i = 0; i < propertyTypes.length; i++) {
+            if (!propertyTypes[i].isCollectionType()) {
+                continue;
+            }
+            AbstractCollectionPersister collectionPersister = (AbstractCollectionPersister) session.getFactory()
+                    .getMetamodel().collectionPersister(((CollectionType) propertyTypes[i]).getRole());
+            Object value = persister.getPropertyValue(entity, i);
+            if (!collectionPersister.isManyToMany() || !isOwnedJoinTable(collectionPersister)
+                    || !(value instanceof Collection) || value instanceof PersistentCollection) {
+                continue;
+            }
+            Class<?> elementClass = collectionPersister.getElementType().getReturnedClass();
+            EntityPersister elementPersister = session.getFactory().getMetamodel().entityPersister(elementClass);
+            List<Serializable> elementIds = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                Serializable elementId = elementPersister.getIdentifier(element, session);
+                if (elementId == null) {
+                    throw new EntityNotFoundException(elementClass.getSimpleName() + " without id");
+                }
+                elementIds.add(elementId);
+            }
+            List<?> elements = entityManager.unwrap(Session.class).byMultipleIds(elementClass).multiLoad(elementIds);
+            for (int j = 0; j < elements.size(); j++) {
+                if (elements.get(j) == null) {
+                    throw new EntityNotFoundException(elementClass.getSimpleName() + " " + elementIds.get(j));
+                }
+            }
+            Collection<Object> elementCollection = value instanceof List ? new ArrayList<>() : new LinkedHashSet<>();
+            elementCollection.addAll(elements);
+            persister.setPropertyValue(entity, i, elementCollection);
+            resolved.add(i);
+        }
+        return resolved;
+    }
+
+    /**
+     * @param dialect       dialect
+     * @param table         table
+     * @param columns       columns, id column first
+     * @param castTypes     sql types of columns
+     * @param updateColumns columns to update on conflict
+     * @param versionColumn version column incremented on conflict, null if not versioned
+     * @param checkVersion  update on conflict only if the version column equals the bound version
+     * @return upsert sql
+     */
+    private String buildUpsertSql(Dialect dialect, String table, List<String> columns, List<String> castTypes,
+                                  List<String> updateColumns, String versionColumn, boolean checkVersion) {
+        String idColumn = columns.get(0);
+        String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
+        if (dialect instanceof H2Dialect) {
+            if (versionColumn == null) {
+                return "MERGE INTO " + table + " (" + String.join(", ", columns) + ") KEY (" + idColumn
+                        + ") VALUES (" + placeholders + ")";
+            }
+            // MERGE ... KEY can only overwrite, MERGE ... USING can increment and check the version
+            List<String> assignments = updateColumns.stream().map(column -> column + " = s." + column)
+                    .collect(Collectors.toList());
+            assignments.add(versionColumn + " = t." + versionColumn + " + 1");
+            List<String> selections = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                selections.add("CAST(? AS " + castTypes.get(i) + ") AS " + columns.get(i));
+            }
+            return "MERGE INTO " + table + " t USING (SELECT " + String.join(", ", selections) + ") s ON (t."
+                    + idColumn + " = s." + idColumn + ")"
+                    + " WHEN MATCHED" + (checkVersion ? " AND t." + versionColumn + " = s." + versionColumn : "")
+                    + " THEN UPDATE SET " + String.join(", ", assignments)
+                    + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES ("
+                    + columns.stream().map(column -> "s." + column).collect(Collectors.joining(", ")) + ")";
+        }
+        String insert = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ")";
+        if (dialect instanceof MySQLDialect) {
+            // assignments run left to right, the version is assigned last so every guard sees the old one
+            String matched = versionColumn + " = VALUES(" + versionColumn + ")";
+            List<String> assignments = updateColumns.stream().map(column -> column + " = " + (checkVersion
+                    ? "IF(" + matched + ", VALUES(" + column + "), " + column + ")" : "VALUES(" + column + ")"))
+                    .collect(Collectors.toList());
+            if (versionColumn != null) {
+                assignments.add(versionColumn + " = " + (checkVersion ? "IF(" + matched + ", " + versionColumn
+                        + " + 1, " + versionColumn + ")" : versionColumn + " + 1"));
+            }
+            if (assignments.isEmpty()) {
+                assignments.add(idColumn + " = " + idColumn);
+            }
+            return insert + " ON DUPLICATE KEY UPDATE " + String.join(", ", assignments);
+        }
+        List<String> assignments = updateColumns.stream().map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.toList());
+        if (versionColumn != null) {
+            assignments.add(versionColumn + " = " + table + "." + versionColumn + " + 1");
+        }
+        if (assignments.isEmpty()) {
+            return insert + " ON CONFLICT (" + idColumn + ") DO NOTHING";
+        }
+        return insert + " ON CONFLICT (" + idColumn + ") DO UPDATE SET " + String.join(", ", assignments)
+                + (checkVersion ? " WHERE " + table + "." + versionColumn + " = EXCLUDED." + versionColumn : "");
     }
 
     /**
@@ -157,8 +1139,163 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @return T
      */
     @Override
+    @Transactional
     public T update(T entity) {
-        return getBaseDao().saveAndFlush(entity);
+        T managed = toManaged(entity);
+        T saved = getBaseDao().saveAndFlush(managed != null ? managed : entity);
+        evictCache();
+        evictCachedEntities(Collections.singletonList(saved));
+        return saved;
+    }
+
+    /**
+     * optimistic read-modify-write, each attempt runs in its own transaction so it reads the latest version.
+     *
+     * @param id       id
+     * @param mutation mutation of the managed entity
+     * @return updated entity, null if not found
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public T updateWithRetry(I id, UnaryOperator<T> mutation) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T updated = template.execute(status -> {
+                    T entity = getBaseDao().findById(id).orElse(null);
+                    return entity == null ? null : getBaseDao().saveAndFlush(mutation.apply(entity));
+                });
+                if (updated != null) {
+                    evictCached(Collections.singletonList(id));
+                }
+                return updated;
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                if (attempt >= updateMaxAttempts) {
+                    throw e;
+                }
+                meterRegistry.counter("jpa.update.retry", "entity", entityClass.getSimpleName()).increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * buffer the mutation and return, mutations of the same id are composed and written later in jdbc batches.
+     * writes synchronously by updateWithRetry when no scheduler is configured.
+     *
+     * @param id       id
+     * @param mutation mutation of the managed entity
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void updateBehind(I id, UnaryOperator<T> mutation) {
+        if (writeBehindScheduler == null || transactionManager == null) {
+            updateWithRetry(id, mutation);
+            return;
+        }
+        getWriteBehindBuffer().add(id, mutation);
+    }
+
+    /**
+     * write mutations buffered by updateBehind now.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void flushBehind() {
+        WriteBehindBuffer<I, T> buffer = this.writeBehindBuffer;
+        if (buffer != null) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * drain buffered mutations on shutdown, before the scheduler and the entity manager factory are closed.
+     */
+    @PreDestroy
+    public void closeWriteBehind() {
+        WriteBehindBuffer<I, T> buffer = this.writeBehindBuffer;
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    /**
+     * @return buffer of updateBehind
+     */
+    private WriteBehindBuffer<I, T> getWriteBehindBuffer() {
+        WriteBehindBuffer<I, T> buffer = this.writeBehindBuffer;
+        if (buffer == null) {
+            synchronized (this) {
+                buffer = this.writeBehindBuffer;
+                if (buffer == null) {
+                    String entity = entityClass.getSimpleName();
+                    buffer = new WriteBehindBuffer<>(this::writeBehind, writeBehindScheduler,
+                            writeBehindIntervalMillis, writeBehindBatchSize, writeBehindCapacity,
+                            meterRegistry.counter("jpa.write.behind", "entity", entity, "result", "buffered"),
+                            meterRegistry.counter("jpa.write.behind", "entity", entity, "result", "coalesced"),
+                            meterRegistry.counter("jpa.write.behind", "entity", entity, "result", "flushed"),
+                            meterRegistry.counter("jpa.write.behind", "entity", entity, "result", "dropped"));
+                    Gauge.builder("jpa.write.behind.pending", buffer, WriteBehindBuffer::size)
+                            .description("Ids with mutations buffered by updateBehind")
+                            .tag("entity", entity)
+                            .register(meterRegistry);
+                    this.writeBehindBuffer = buffer;
+                }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * write one batch of buffered mutations: one select per IN_CLAUSE_CHUNK_SIZE ids, mutations applied to the
+     * managed entities and the updates flushed as one jdbc batch. the batch is retried like updateWithRetry when
+     * a concurrent write wins, ids not found are skipped.
+     *
+     * @param batch mutation by id
+     */
+    @SuppressWarnings("unchecked")
+    private void writeBehind(Map<I, UnaryOperator<T>> batch) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<I> ids = new ArrayList<>(batch.keySet());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                template.executeWithoutResult(status -> {
+                    for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+                        List<I> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+                        getBaseDao().findAllById(chunk)
+                                .forEach(entity -> getBaseDao().save(batch.get((I) getId(entity)).apply(entity)));
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                });
+                evictCache();
+                evictCached(ids);
+                return;
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                if (attempt >= updateMaxAttempts) {
+                    throw e;
+                }
+                meterRegistry.counter("jpa.update.retry", "entity", entityClass.getSimpleName()).increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * sleep a random time up to an exponentially growing cap (full jitter), so writers that just collided do
+     * not collide again on the next attempt.
+     *
+     * @param attempt attempt, from 1
+     */
+    private static void backoff(int attempt) {
+        long cap = Math.min(RETRY_BACKOFF_MAX_MILLIS, RETRY_BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while retrying update", e);
+        }
     }
 
     /**
@@ -167,8 +1304,11 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param id id
      */
     @Override
+    @Transactional
     public void delete(I id) {
         getBaseDao().deleteById(id);
+        evictCache();
+        evictCached(Collections.singletonList(id));
     }
 
     /**
@@ -177,16 +1317,147 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param ids ids
      */
     @Override
+    @Transactional
     public void deleteByIds(List<I> ids) {
         getBaseDao().deleteAllById(ids);
+        evictCache();
+        evictCached(ids);
+    }
+
+    /**
+     * set-based delete by ids in chunks of IN_CLAUSE_CHUNK_SIZE, join table rows on both sides of many-to-many
+     * associations are deleted first. entity callbacks and cascades are not applied.
+     *
+     * @param ids ids
+     * @return deleted rows
+     */
+    @Override
+    @Transactional
+    public int deleteByIdsInBatch(List<I> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        entityManager.flush();
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class);
+        List<AbstractCollectionPersister> joinTables = new ArrayList<>();
+        for (CollectionPersister collectionPersister : sessionFactory.getMetamodel().collectionPersisters().values()) {
+            AbstractCollectionPersister persister = (AbstractCollectionPersister) collectionPersister;
+            if (persister.isOneToMany()) {
+                continue;
+            }
+            if (isOwnedJoinTable(persister) || isReferencingJoinTable(persister)) {
+                joinTables.add(persister);
+            }
+        }
+
+        String idAttribute = entityManager.getMetamodel().entity(entityClass).getId(idClass).getName();
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<I> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            for (AbstractCollectionPersister persister : joinTables) {
+                String column = isOwnedJoinTable(persister) ? persister.getKeyColumnNames()[0]
+                        : persister.getElementColumnNames()[0];
+                entityManager.createNativeQuery("DELETE FROM " + persister.getTableName() + " WHERE " + column
+                        + " IN (:ids)")
+                        .unwrap(NativeQuery.class)
+                        .addSynchronizedQuerySpace(persister.getTableName())
+                        .setParameterList("ids", chunk)
+                        .executeUpdate();
+            }
+            CriteriaDelete<T> delete = cb.createCriteriaDelete(entityClass);
+            Root<T> root = delete.from(entityClass);
+            delete.where(root.get(idAttribute).in(chunk));
+            deleted += entityManager.createQuery(delete).executeUpdate();
+        }
+        joinTables.forEach(persister -> sessionFactory.getCache().evictCollectionData(persister.getRole()));
+        entityManager.clear();
+        evictCache();
+        evictCached(ids);
+        return deleted;
+    }
+
+    /**
+     * set-based delete.
+     *
+     * @param entities entities
+     * @return deleted rows
+     */
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public int deleteInBatch(Iterable<T> entities) {
+        List<I> ids = new ArrayList<>();
+        entities.forEach(entity -> ids.add((I) getId(entity)));
+        return deleteByIdsInBatch(ids);
+    }
+
+    /**
+     * set-based update by criteria update. spring data specifications are written for select queries, so the
+     * spec is called with a null query argument.
+     *
+     * @param spec   spec, must not depend on the query argument
+     * @param values attribute name -> new value
+     * @return updated rows
+     */
+    @Override
+    @Transactional
+    public int updateWhere(Specification<T> spec, Map<String, Object> values) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = cb.createCriteriaUpdate(entityClass);
+        Root<T> root = update.from(entityClass);
+        values.forEach((attribute, value) -> update.set(attribute, value));
+        // bulk update bypasses optimistic locking, bump the version so concurrent writers of these rows fail
+        entityManager.getMetamodel().entity(entityClass).getSingularAttributes().stream()
+                .filter(SingularAttribute::isVersion).findFirst().ifPresent(attribute -> {
+                    Path<Number> version = root.get(attribute.getName());
+                    // literals are bound as parameters, the increment must have the type of the version
+                    Class<?> type = attribute.getJavaType();
+                    Number one = type == Long.class || type == long.class ? (Number) 1L : (Number) 1;
+                    update.set(version, cb.sum(version, one));
+                });
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, null, cb);
+        if (predicate != null) {
+            update.where(predicate);
+        }
+        entityManager.flush();
+        int updated = entityManager.createQuery(update).executeUpdate();
+        entityManager.clear();
+        evictCache();
+        evictCached(null);
+        return updated;
+    }
+
+    /**
+     * @param persister collection persister
+     * @return true if the join table is owned by this entity, e.g. tb_user_role for User
+     */
+    private boolean isOwnedJoinTable(AbstractCollectionPersister persister) {
+        return !persister.isInverse() && persister.getOwnerEntityPersister().getMappedClass() == entityClass;
+    }
+
+    /**
+     * @param persister collection persister
+     * @return true if the join table references this entity as element, e.g. tb_user_role for Role
+     */
+    private boolean isReferencingJoinTable(AbstractCollectionPersister persister) {
+        return persister.isManyToMany() && !persister.isInverse()
+                && persister.getElementType().getReturnedClass() == entityClass;
     }
 
     /**
      * delete all.
      */
     @Override
+    @Transactional
     public void deleteAll() {
         getBaseDao().deleteAllInBatch();
+        evictCache();
+        evictCached(null);
     }
 
     /**
@@ -195,9 +1466,12 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void delete(T[] entities) {
         List<T> tList = Arrays.asList(entities);
         getBaseDao().deleteAll(tList);
+        evictCache();
+        evictCachedEntities(tList);
     }
 
     /**
@@ -206,8 +1480,11 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entities entities
      */
     @Override
+    @Transactional
     public void delete(Iterable<T> entities) {
         getBaseDao().deleteAll(entities);
+        evictCache();
+        evictCachedEntities(entities);
     }
 
     /**
@@ -216,8 +1493,18 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
      * @param entity entity
      */
     @Override
+    @Transactional
     public void delete(T entity) {
         getBaseDao().delete(entity);
+        evictCache();
+        evictCachedEntities(Collections.singletonList(entity));
+    }
+
+    /**
+     * evict second-level cache after save/update/delete. entity, owned collection and query regions are kept
+     * coherent by hibernate, subclasses evict what hibernate can not see, e.g. the other side of a many-to-many.
+     */
+    protected void evictCache() {
     }
 
     /**
@@ -239,10 +1526,365 @@ public abstract class BaseDoServiceImpl<T extends BaseEntity, I extends Serializ
         return getBaseDao().findAll(spec, pageable);
     }
 
+    /**
+     * @param spec      spec
+     * @param pageable  pageable
+     * @param fetchPlan fetch plan
+     * @return Page
+     */
+    @Override
+    public Page<T> findAll(Specification<T> spec, Pageable pageable, FetchPlan<T> fetchPlan) {
+        Page<T> page = getBaseDao().findAll(spec, pageable);
+        fetch(page.getContent(), fetchPlan);
+        return page;
+    }
+
+    /**
+     * find page, the count runs on the paged query executor with its own connection while the content is read.
+     *
+     * @param spec     spec
+     * @param pageable pageable
+     * @return Page
+     */
+    @Override
+    public Page<T> findAllInParallel(Specification<T> spec, Pageable pageable) {
+        return getPage(() -> {
+            CriteriaQuery<T> query = entityManager.getCriteriaBuilder().createQuery(entityClass);
+            Root<T> root = query.from(entityClass);
+            TypedQuery<T> typedQuery = createQuery(query.select(root), root, spec, pageable);
+            getQueryHints().forEach(typedQuery::setHint);
+            return typedQuery.getResultList();
+        }, pageable, () -> count(spec), true);
+    }
+
+    /**
+     * read content and, if the total can not be told from the content, count. the count is skipped when the page
+     * is short, in parallel mode it is submitted first, then its result is dropped and it is cancelled if it has
+     * not started yet.
+     *
+     * @param content  content query
+     * @param pageable pageable
+     * @param count    count query, must not depend on the caller's persistence context in parallel mode
+     * @param parallel run count in parallel on another connection
+     * @param <R>      type of content
+     * @return Page
+     */
+    protected <R> Page<R> getPage(Supplier<List<R>> content, Pageable pageable, LongSupplier count,
+                                  boolean parallel) {
+        String entity = entityClass.getSimpleName();
+        Timer countTimer = pageQueryTimer(entity, "count");
+        CompletableFuture<Long> total = null;
+        if (parallel && pagedQueryExecutor != null && transactionManager != null) {
+            TransactionTemplate template = new TransactionTemplate(transactionManager);
+            template.setReadOnly(true);
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            total = CompletableFuture.supplyAsync(
+                    () -> countTimer.record(() -> template.execute(status -> count.getAsLong())), pagedQueryExecutor);
+        }
+
+        List<R> rows = pageQueryTimer(entity, "content").record(content);
+        CompletableFuture<Long> parallelTotal = total;
+        AtomicBoolean counted = new AtomicBoolean();
+        Page<R> page = PageableExecutionUtils.getPage(rows, pageable, () -> {
+            counted.set(true);
+            return parallelTotal == null ? countTimer.record(count::getAsLong) : join(parallelTotal);
+        });
+        if (!counted.get()) {
+            if (parallelTotal != null) {
+                parallelTotal.cancel(false);
+            }
+            meterRegistry.counter("jpa.page.count.skipped", "entity", entity).increment();
+        }
+        return page;
+    }
+
+    /**
+     * @param entity entity
+     * @param part   content or count
+     * @return latency histogram
+     */
+    private Timer pageQueryTimer(String entity, String part) {
+        return Timer.builder("jpa.page.query")
+                .description("Latency of paged query")
+                .tag("entity", entity)
+                .tag("part", part)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param future future
+     * @param <R>    type of result
+     * @return result, with the exception of the task rethrown as is
+     */
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * find page of projection, selects only the projected columns so no entity is hydrated or snapshotted.
+     *
+     * @param spec       spec
+     * @param pageable   pageable
+     * @param projection closed interface projection or dto with constructor of projected properties
+     * @param <P>        type of projection
+     * @return Page
+     */
+    @Override
+    public <P> Page<P> findAll(Specification<T> spec, Pageable pageable, Class<P> projection) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        List<P> content;
+        if (projection.isInterface()) {
+            List<String> properties = projectionFactory.getProjectionInformation(projection).getInputProperties()
+                    .stream().map(PropertyDescriptor::getName).collect(Collectors.toList());
+            CriteriaQuery<Tuple> query = cb.createTupleQuery();
+            Root<T> root = query.from(entityClass);
+            query.multiselect(properties.stream().<Selection<?>>map(property -> root.get(property).alias(property))
+                    .collect(Collectors.toList()));
+            content = createQuery(query, root, spec, pageable).getResultList().stream().map(tuple -> {
+                Map<String, Object> values = new HashMap<>(properties.size() * 2);
+                properties.forEach(property -> values.put(property, tuple.get(property)));
+                return projectionFactory.createProjection(projection, values);
+            }).collect(Collectors.toList());
+        } else {
+            Constructor<?> constructor = Arrays.stream(projection.getDeclaredConstructors())
+                    .max(Comparator.comparingInt(Constructor::getParameterCount))
+                    .orElseThrow(() -> new IllegalArgumentException("no constructor of " + projection.getName()));
+            CriteriaQuery<P> query = cb.createQuery(projection);
+            Root<T> root = query.from(entityClass);
+            query.select(cb.construct(projection, Arrays.stream(BeanUtils.getParameterNames(constructor))
+                    .map(root::get).toArray(Selection[]::new)));
+            content = createQuery(query, root, spec, pageable).getResultList();
+        }
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    /**
+     * @param query    query
+     * @param root     root
+     * @param spec     spec
+     * @param pageable pageable
+     * @param <R>      type of result
+     * @return typed query with where, order by and limit applied
+     */
+    private <R> TypedQuery<R> createQuery(CriteriaQuery<R> query, Root<T> root, Specification<T> spec,
+                                          Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+        TypedQuery<R> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery;
+    }
+
+    /**
+     * find page by like predicates with fetch plan, empty values are skipped. the select and count jpql of each
+     * query shape (active attributes and sort) are rendered once and cached, a call only binds the values, so no
+     * criteria tree is built and rendered per call and hibernate serves the translation from its query plan cache.
+     * the page goes through the application cache and the single-flight, the fetch plan is applied inside the
+     * single-flight so a shared page is never initialized by several threads.
+     *
+     * @param likes     like pattern by attribute
+     * @param pageable  pageable
+     * @param fetchPlan fetch plan
+     * @return Page
+     */
+    protected Page<T> findPageByLike(Map<String, String> likes, Pageable pageable, FetchPlan<T> fetchPlan) {
+        Map<String, String> active = new LinkedHashMap<>();
+        likes.forEach((attribute, value) -> {
+            if (StringUtils.isNotEmpty(value)) {
+                active.put(attribute, value);
+            }
+        });
+        String[] jpql = queryShapes.computeIfAbsent(Arrays.asList(new ArrayList<>(active.keySet()),
+                pageable.getSort()), shape -> compileQueryShape(active.keySet(), pageable.getSort()));
+
+        List<Object> pageKey = Arrays.asList(active, pageable, fetchPlan);
+        return cached(entityClass.getSimpleName() + PAGE_CACHE_SUFFIX, pageKey, () -> singleFlight(pageKey, () -> {
+            Page<T> page = getPage(() -> {
+                TypedQuery<T> query = bindQuery(entityManager.createQuery(jpql[0], entityClass), active.values());
+                if (pageable.isPaged()) {
+                    query.setFirstResult((int) pageable.getOffset());
+                    query.setMaxResults(pageable.getPageSize());
+                }
+                return query.getResultList();
+            }, pageable, () -> bindQuery(entityManager.createQuery(jpql[1], Long.class), active.values())
+                    .getSingleResult(), parallelCount);
+            fetch(page.getContent(), fetchPlan);
+            return page;
+        }));
+    }
+
+    /**
+     * @param query  query
+     * @param values values of like predicates, in the order of the shape
+     * @param <R>    type of result
+     * @return query with hints and values bound
+     */
+    private <R> TypedQuery<R> bindQuery(TypedQuery<R> query, Collection<String> values) {
+        getQueryHints().forEach(query::setHint);
+        int i = 0;
+        for (String value : values) {
+            query.setParameter("p" + i++, value);
+        }
+        return query;
+    }
+
+    /**
+     * @param likeAttributes attributes of like predicates
+     * @param sort           sort
+     * @return jpql of select and count
+     */
+    private String[] compileQueryShape(Collection<String> likeAttributes, Sort sort) {
+        // attributes are checked against the metamodel, so nothing but mapped names goes into the jpql
+        EntityType<T> entityType = entityManager.getMetamodel().entity(entityClass);
+        StringBuilder from = new StringBuilder(" from ").append(entityType.getName()).append(" e");
+        int i = 0;
+        for (String attribute : likeAttributes) {
+            entityType.getAttribute(attribute);
+            from.append(i == 0 ? " where " : " and ").append("e.").append(attribute).append(" like :p").append(i++);
+        }
+        sort.forEach(order -> entityType.getAttribute(order.getProperty()));
+        return new String[]{QueryUtils.applySorting("select e" + from, sort, "e"), "select count(e)" + from};
+    }
+
+    /**
+     * @return hints applied to the queries of {@link #findPageByLike(Map, Pageable, FetchPlan)} and to the content
+     * query of {@link #findAllInParallel(Specification, Pageable)}, the repository applies its own hints otherwise
+     */
+    protected Map<String, Object> getQueryHints() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * keyset pagination by id.
+     *
+     * @param spec   spec
+     * @param cursor cursor
+     * @param size   size
+     * @return slice
+     */
+    @Override
+    public KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size) {
+        return findSlice(spec, cursor, size, FetchPlan.none());
+    }
+
+    /**
+     * keyset pagination by id, seeks with {@code id > key} (or {@code id < key} backward) so the cost does not
+     * grow with page depth, and reads size + 1 rows to know whether there is more instead of counting.
+     *
+     * @param spec      spec
+     * @param cursor    cursor
+     * @param size      size
+     * @param fetchPlan fetch plan
+     * @return slice
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public KeysetSlice<T> findSlice(Specification<T> spec, KeysetCursor cursor, int size, FetchPlan<T> fetchPlan) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(entityClass);
+        Root<T> root = query.from(entityClass);
+        Path<Comparable> idPath = root.get(entityManager.getMetamodel().entity(entityClass).getId(idClass).getName());
+
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (cursor.getKey() != null) {
+            Comparable key = (Comparable) DefaultConversionService.getSharedInstance().convert(cursor.getKey(), idClass);
+            Predicate seek = cursor.isForward() ? cb.greaterThan(idPath, key) : cb.lessThan(idPath, key);
+            predicate = predicate == null ? seek : cb.and(predicate, seek);
+        }
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(cursor.isForward() ? cb.asc(idPath) : cb.desc(idPath));
+
+        List<T> rows = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+        boolean hasMore = rows.size() > size;
+        List<T> content = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        if (!cursor.isForward()) {
+            Collections.reverse(content);
+        }
+        fetch(content, fetchPlan);
+
+        String nextCursor = null;
+        String prevCursor = null;
+        if (!content.isEmpty()) {
+            Object firstId = getId(content.get(0));
+            Object lastId = getId(content.get(content.size() - 1));
+            if (cursor.isForward() ? hasMore : cursor.getKey() != null) {
+                nextCursor = KeysetCursor.after(lastId).encode();
+            }
+            if (cursor.isForward() ? cursor.getKey() != null : hasMore) {
+                prevCursor = KeysetCursor.before(firstId).encode();
+            }
+        }
+        return new KeysetSlice<>(content, nextCursor, prevCursor);
+    }
+
+    /**
+     * @param entity entity
+     * @return id
+     */
+    protected Object getId(T entity) {
+        return entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    /**
+     * initialize the lazy attribute of fetch plan, the attribute of the whole page is loaded by batch fetching
+     * instead of one select per row.
+     *
+     * @param entities  entities
+     * @param fetchPlan fetch plan
+     */
+    protected void fetch(Collection<T> entities, FetchPlan<T> fetchPlan) {
+        if (fetchPlan.getAttribute() == null) {
+            return;
+        }
+        for (T entity : entities) {
+            Hibernate.initialize(new BeanWrapperImpl(entity).getPropertyValue(fetchPlan.getAttribute()));
+        }
+    }
+
+    /**
+     * @param type       entity class
+     * @param annotation mapping annotation
+     * @return first field with the annotation, null if none
+     */
+    private static Field findAnnotatedField(Class<?> type, Class<? extends Annotation> annotation) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.isAnnotationPresent(annotation)) {
+                    ReflectionUtils.makeAccessible(field);
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * flush.
      */
     @Override
+    @Transactional
     public void flush() {
         getBaseDao().flush();
     }
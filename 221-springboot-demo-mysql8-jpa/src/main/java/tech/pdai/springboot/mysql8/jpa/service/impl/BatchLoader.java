@@ -0,0 +1,161 @@
+package tech.pdai.springboot.mysql8.jpa.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+
+/**
+ * DataLoader-style micro-batching: loads of single keys arriving within a window are collected and loaded
+ * together, the batch is dispatched when the window elapses or max batch size keys are pending.
+ *
+ * @param <I> type of key
+ * @param <T> type of value
+ * @author pdai
+ */
+final class BatchLoader<I, T> {
+
+    /**
+     * loads a batch of keys, missing keys are absent from the result.
+     */
+    private final Function<List<I>, Map<I, T>> batchLoad;
+
+    /**
+     * runs the window timer and the batch loads, so a load never joins the caller's transaction.
+     */
+    private final ThreadPoolTaskScheduler scheduler;
+
+    /**
+     * window in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * max keys in one batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * size of dispatched batches.
+     */
+    private final DistributionSummary batchSize;
+
+    /**
+     * pending loads of current window, the same key pending twice shares one future. guarded by this.
+     */
+    private Map<I, CompletableFuture<T>> pending = new LinkedHashMap<>();
+
+    /**
+     * dispatch at the end of current window, guarded by this.
+     */
+    private ScheduledFuture<?> scheduledDispatch;
+
+    /**
+     * init.
+     *
+     * @param batchLoad    batch load
+     * @param scheduler    scheduler
+     * @param windowMillis window in milliseconds
+     * @param maxBatchSize max batch size
+     * @param batchSize    size of dispatched batches
+     */
+    BatchLoader(Function<List<I>, Map<I, T>> batchLoad, ThreadPoolTaskScheduler scheduler, long windowMillis,
+                int maxBatchSize, DistributionSummary batchSize) {
+        this.batchLoad = batchLoad;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param key key
+     * @return value, null if not found
+     */
+    CompletableFuture<T> load(I key) {
+        Map<I, CompletableFuture<T>> full = null;
+        CompletableFuture<T> future;
+        synchronized (this) {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledDispatch = scheduler.schedule(this::dispatchPending,
+                        Instant.now().plusMillis(windowMillis));
+            }
+        }
+        if (full != null) {
+            Map<I, CompletableFuture<T>> batch = full;
+            try {
+                scheduler.execute(() -> dispatch(batch));
+            } catch (RuntimeException e) {
+                // rejected on shutdown, nothing else would complete the batch
+                fail(batch, e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * @return pending loads, caller holds the lock
+     */
+    private Map<I, CompletableFuture<T>> takePending() {
+        Map<I, CompletableFuture<T>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledDispatch != null) {
+            scheduledDispatch.cancel(false);
+            scheduledDispatch = null;
+        }
+        return batch;
+    }
+
+    /**
+     * dispatch at the end of window.
+     */
+    private void dispatchPending() {
+        Map<I, CompletableFuture<T>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * @param batch batch
+     */
+    private void dispatch(Map<I, CompletableFuture<T>> batch) {
+        try {
+            batchSize.record(batch.size());
+            Map<I, T> values = batchLoad.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (Throwable e) {
+            // an error must not leave the callers waiting forever, it is rethrown to the scheduler's error handler
+            fail(batch, e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    /**
+     * @param batch batch
+     * @param e     cause
+     */
+    private void fail(Map<I, CompletableFuture<T>> batch, Throwable e) {
+        batch.values().forEach(future -> future.completeExceptionally(e));
+    }
+}
@@ -1,17 +1,26 @@
 package tech.pdai.springboot.mysql8.jpa.service.impl;
 
-import com.github.wenhao.jpa.Specifications;
-import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndexUpdater;
+import tech.pdai.springboot.mysql8.jpa.constants.FetchPlan;
 import tech.pdai.springboot.mysql8.jpa.dao.IBaseDao;
 import tech.pdai.springboot.mysql8.jpa.dao.IRoleDao;
 import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
 import tech.pdai.springboot.mysql8.jpa.entity.query.RoleQueryBean;
 import tech.pdai.springboot.mysql8.jpa.service.IRoleService;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class RoleDoServiceImpl extends BaseDoServiceImpl<Role, Long> implements IRoleService {
 
@@ -20,13 +29,26 @@ public class RoleDoServiceImpl extends BaseDoServiceImpl<Role, Long> implements
      */
     private final IRoleDao roleDao;
 
+    /**
+     * sessionFactory.
+     */
+    private final SessionFactory sessionFactory;
+
+    /**
+     * updater of the user role index, absent unless jpa.user-role-index.enabled.
+     */
+    @Autowired(required = false)
+    private UserRoleIndexUpdater userRoleIndexUpdater;
+
     /**
      * init.
      *
-     * @param roleDao2 role dao
+     * @param roleDao2        role dao
+     * @param sessionFactory2 session factory
      */
-    public RoleDoServiceImpl(final IRoleDao roleDao2) {
+    public RoleDoServiceImpl(final IRoleDao roleDao2, final SessionFactory sessionFactory2) {
         this.roleDao = roleDao2;
+        this.sessionFactory = sessionFactory2;
     }
 
     /**
@@ -37,6 +59,43 @@ public class RoleDoServiceImpl extends BaseDoServiceImpl<Role, Long> implements
         return this.roleDao;
     }
 
+    /**
+     * cached User.roles collections only hold role ids, evict them so a removed role is not served from cache.
+     */
+    @Override
+    protected void evictCache() {
+        this.sessionFactory.getCache().evictCollectionData(User.class.getName() + ".roles");
+        clearCachedPages(User.class);
+    }
+
+    /**
+     * set-based deletes bypass hibernate events, report them to the user role index.
+     *
+     * @param ids ids
+     * @return deleted rows
+     */
+    @Override
+    @Transactional
+    public int deleteByIdsInBatch(List<Long> ids) {
+        int deleted = super.deleteByIdsInBatch(ids);
+        if (userRoleIndexUpdater != null) {
+            userRoleIndexUpdater.rolesDeleted(ids);
+        }
+        return deleted;
+    }
+
+    /**
+     * delete all.
+     */
+    @Override
+    @Transactional
+    public void deleteAll() {
+        super.deleteAll();
+        if (userRoleIndexUpdater != null) {
+            userRoleIndexUpdater.rolesDeleted(null);
+        }
+    }
+
     /**
      * find page by query.
      *
@@ -46,13 +105,23 @@ public class RoleDoServiceImpl extends BaseDoServiceImpl<Role, Long> implements
      */
     @Override
     public Page<Role> findPage(RoleQueryBean roleQueryBean, PageRequest pageRequest) {
-        Specification<Role> specification = Specifications.<Role>and()
-                .like(StringUtils.isNotEmpty(roleQueryBean.getName()), "name",
-                        roleQueryBean.getName())
-                .like(StringUtils.isNotEmpty(roleQueryBean.getDescription()), "description",
-                        roleQueryBean.getDescription())
-                .build();
-        return this.roleDao.findAll(specification, pageRequest);
+        Map<String, String> likes = new LinkedHashMap<>();
+        likes.put("name", roleQueryBean.getName());
+        likes.put("description", roleQueryBean.getDescription());
+        return this.findPageByLike(likes, pageRequest, FetchPlan.none());
+    }
+
+    /**
+     * role pages go to the query cache, same as the specification queries of {@link IRoleDao}.
+     *
+     * @return query hints
+     */
+    @Override
+    protected Map<String, Object> getQueryHints() {
+        Map<String, Object> hints = new HashMap<>(4);
+        hints.put(QueryHints.HINT_CACHEABLE, true);
+        hints.put(QueryHints.HINT_CACHE_REGION, "query-specification");
+        return hints;
     }
 
 }
@@ -0,0 +1,79 @@
+package tech.pdai.springboot.mysql8.jpa.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * single-flight: concurrent calls with the same key share one execution and its result. a call arriving
+ * after the execution finished starts a new one, nothing is cached.
+ *
+ * @author pdai
+ */
+final class SingleFlight {
+
+    /**
+     * executions in flight by key.
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * calls that ran the execution.
+     */
+    private final Counter executed;
+
+    /**
+     * calls that joined an execution in flight.
+     */
+    private final Counter coalesced;
+
+    /**
+     * init.
+     *
+     * @param executed  counter of executed calls
+     * @param coalesced counter of coalesced calls
+     */
+    SingleFlight(Counter executed, Counter coalesced) {
+        this.executed = executed;
+        this.coalesced = coalesced;
+    }
+
+    /**
+     * @param key  key of method and arguments, must implement equals and hashCode
+     * @param call call
+     * @param <V>  type of result
+     * @return result, shared by all callers of the flight
+     */
+    @SuppressWarnings("unchecked")
+    <V> V execute(Object key, Supplier<V> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return (V) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        executed.increment();
+        try {
+            V result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+}
@@ -3,16 +3,32 @@ package tech.pdai.springboot.mysql8.jpa.service.impl;
 
 import com.github.wenhao.jpa.Specifications;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndex;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndexUpdater;
+import tech.pdai.springboot.mysql8.jpa.constants.FetchPlan;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
 import tech.pdai.springboot.mysql8.jpa.dao.IBaseDao;
 import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
 import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
 import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 import tech.pdai.springboot.mysql8.jpa.service.IUserService;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 public class UserDoServiceImpl extends BaseDoServiceImpl<User, Long> implements IUserService {
 
@@ -21,6 +37,15 @@ public class UserDoServiceImpl extends BaseDoServiceImpl<User, Long> implements
      */
     private final IUserDao userDao;
 
+    /**
+     * in-memory user role index, absent unless jpa.user-role-index.enabled.
+     */
+    @Autowired(required = false)
+    private UserRoleIndex userRoleIndex;
+
+    @Autowired(required = false)
+    private UserRoleIndexUpdater userRoleIndexUpdater;
+
     /**
      * init.
      *
@@ -47,12 +72,125 @@ public class UserDoServiceImpl extends BaseDoServiceImpl<User, Long> implements
      */
     @Override
     public Page<User> findPage(UserQueryBean queryBean, PageRequest pageRequest) {
-        Specification<User> specification = Specifications.<User>and()
-                .like(StringUtils.isNotEmpty(queryBean.getName()), "user_name", queryBean.getName())
+        return findPage(queryBean, pageRequest, UserFetchPlan.NONE);
+    }
+
+    /**
+     * find by page with fetch plan.
+     *
+     * @param queryBean   query
+     * @param pageRequest pageRequest
+     * @param fetchPlan   fetch plan
+     * @return page
+     */
+    @Override
+    public Page<User> findPage(UserQueryBean queryBean, PageRequest pageRequest, FetchPlan<User> fetchPlan) {
+        Map<String, String> likes = new LinkedHashMap<>();
+        likes.put("userName", queryBean.getName());
+        likes.put("description", queryBean.getDescription());
+        return this.findPageByLike(likes, pageRequest, fetchPlan);
+    }
+
+    /**
+     * find by page of projection.
+     *
+     * @param queryBean   query
+     * @param pageRequest pageRequest
+     * @param projection  projection
+     * @param <P>         type of projection
+     * @return page
+     */
+    @Override
+    public <P> Page<P> findPage(UserQueryBean queryBean, PageRequest pageRequest, Class<P> projection) {
+        return this.findAll(buildSpecification(queryBean), pageRequest, projection);
+    }
+
+    /**
+     * find by keyset cursor.
+     *
+     * @param queryBean query
+     * @param cursor    cursor
+     * @param size      size
+     * @param fetchPlan fetch plan
+     * @return slice
+     */
+    @Override
+    public KeysetSlice<User> findSlice(UserQueryBean queryBean, KeysetCursor cursor, int size, FetchPlan<User> fetchPlan) {
+        return this.findSlice(buildSpecification(queryBean), cursor, size, fetchPlan);
+    }
+
+    /**
+     * role check from the index without touching the database, or from the user loaded with its roles.
+     *
+     * @param userId user id
+     * @param roleId role id
+     * @return whether the user has the role
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public boolean hasRole(Long userId, Long roleId) {
+        if (userRoleIndex != null) {
+            return userRoleIndex.hasRole(userId, roleId);
+        }
+        User user = find(userId, UserFetchPlan.WITH_ROLES);
+        return user != null && user.getRoles().stream().anyMatch(role -> roleId.equals(role.getId()));
+    }
+
+    /**
+     * upsert writes the roles by statement, report them to the index.
+     *
+     * @param user user
+     * @return user with its id
+     */
+    @Override
+    @Transactional
+    public User upsert(User user) {
+        Set<Role> roles = user.getRoles();
+        User written = super.upsert(user);
+        if (userRoleIndexUpdater != null && roles != null && !(roles instanceof PersistentCollection)) {
+            userRoleIndexUpdater.rolesWritten(written.getId(), roles.stream().mapToLong(Role::getId).toArray());
+        }
+        return written;
+    }
+
+    /**
+     * set-based deletes bypass hibernate events, report them to the index.
+     *
+     * @param ids ids
+     * @return deleted rows
+     */
+    @Override
+    @Transactional
+    public int deleteByIdsInBatch(List<Long> ids) {
+        int deleted = super.deleteByIdsInBatch(ids);
+        if (userRoleIndexUpdater != null) {
+            userRoleIndexUpdater.usersDeleted(ids);
+        }
+        return deleted;
+    }
+
+    /**
+     * delete all.
+     */
+    @Override
+    @Transactional
+    public void deleteAll() {
+        super.deleteAll();
+        if (userRoleIndexUpdater != null) {
+            userRoleIndexUpdater.usersDeleted(null);
+        }
+    }
+
+    /**
+     * @param queryBean query
+     * @return specification
+     */
+    private Specification<User> buildSpecification(UserQueryBean queryBean) {
+        return Specifications.<User>and()
+                .like(StringUtils.isNotEmpty(queryBean.getName()), "userName", queryBean.getName())
                 .like(StringUtils.isNotEmpty(queryBean.getDescription()), "description",
                         queryBean.getDescription())
                 .build();
-        return this.getBaseDao().findAll(specification, pageRequest);
     }
 
 }
@@ -0,0 +1,218 @@
+package tech.pdai.springboot.mysql8.jpa.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * write-behind: mutations are buffered by id and written later in batches, mutations of the same id pending
+ * together are composed into one. a flush starts when the interval elapses or batch size ids are pending, a
+ * caller finding the buffer full runs the flush itself. flushes are serialized, so mutations of one id are
+ * written in the order they were added.
+ *
+ * @param <I> type of id
+ * @param <T> type of entity
+ * @author pdai
+ */
+@Slf4j
+final class WriteBehindBuffer<I, T> {
+
+    /**
+     * writes one batch of mutations in one transaction.
+     */
+    private final Consumer<Map<I, UnaryOperator<T>>> write;
+
+    /**
+     * runs the interval timer and the size triggered flushes.
+     */
+    private final ThreadPoolTaskScheduler scheduler;
+
+    /**
+     * max delay of a buffered mutation, in milliseconds.
+     */
+    private final long flushIntervalMillis;
+
+    /**
+     * ids written in one batch, also the pending ids that trigger a flush.
+     */
+    private final int batchSize;
+
+    /**
+     * max pending ids before callers are pushed back.
+     */
+    private final int capacity;
+
+    /**
+     * mutations buffered for an id not pending yet.
+     */
+    private final Counter buffered;
+
+    /**
+     * mutations composed into a pending one.
+     */
+    private final Counter coalesced;
+
+    /**
+     * ids written.
+     */
+    private final Counter flushed;
+
+    /**
+     * ids whose mutations were lost by a failed write.
+     */
+    private final Counter dropped;
+
+    /**
+     * held while a flush takes and writes the pending mutations.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * pending mutations by id, in the order they were first added. guarded by this.
+     */
+    private Map<I, UnaryOperator<T>> pending = new LinkedHashMap<>();
+
+    /**
+     * flush at the end of current interval, guarded by this.
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * closed buffers write each mutation immediately, guarded by this.
+     */
+    private boolean closed;
+
+    /**
+     * init.
+     *
+     * @param write               write of one batch
+     * @param scheduler           scheduler
+     * @param flushIntervalMillis flush interval in milliseconds
+     * @param batchSize           batch size
+     * @param capacity            capacity
+     * @param buffered            counter of buffered mutations
+     * @param coalesced           counter of coalesced mutations
+     * @param flushed             counter of written ids
+     * @param dropped             counter of dropped ids
+     */
+    WriteBehindBuffer(Consumer<Map<I, UnaryOperator<T>>> write, ThreadPoolTaskScheduler scheduler,
+                      long flushIntervalMillis, int batchSize, int capacity, Counter buffered, Counter coalesced,
+                      Counter flushed, Counter dropped) {
+        this.write = write;
+        this.scheduler = scheduler;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+        this.capacity = Math.max(capacity, batchSize);
+        this.buffered = buffered;
+        this.coalesced = coalesced;
+        this.flushed = flushed;
+        this.dropped = dropped;
+    }
+
+    /**
+     * @param id       id
+     * @param mutation mutation
+     */
+    void add(I id, UnaryOperator<T> mutation) {
+        while (true) {
+            synchronized (this) {
+                if (closed) {
+                    break;
+                }
+                UnaryOperator<T> previous = pending.get(id);
+                if (previous != null) {
+                    pending.put(id, entity -> mutation.apply(previous.apply(entity)));
+                    coalesced.increment();
+                    return;
+                }
+                if (pending.size() < capacity) {
+                    pending.put(id, mutation);
+                    buffered.increment();
+                    if (pending.size() == batchSize) {
+                        scheduler.execute(this::flush);
+                    } else if (pending.size() == 1) {
+                        scheduledFlush = scheduler.schedule(this::flush,
+                                Instant.now().plusMillis(flushIntervalMillis));
+                    }
+                    return;
+                }
+            }
+            // full: the caller writes the pending mutations before buffering its own
+            flush();
+        }
+
+        flushLock.lock();
+        try {
+            writeBatch(Collections.singletonMap(id, mutation));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * write all pending mutations, waits for a flush in progress.
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            Map<I, UnaryOperator<T>> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            List<I> ids = new ArrayList<>(batch.keySet());
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                Map<I, UnaryOperator<T>> chunk = new LinkedHashMap<>();
+                ids.subList(from, Math.min(from + batchSize, ids.size())).forEach(id -> chunk.put(id, batch.get(id)));
+                writeBatch(chunk);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * stop buffering and write the pending mutations, mutations added later are written immediately.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    /**
+     * @return pending ids
+     */
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @param batch batch, caller holds the flush lock
+     */
+    private void writeBatch(Map<I, UnaryOperator<T>> batch) {
+        try {
+            write.accept(batch);
+            flushed.increment(batch.size());
+        } catch (RuntimeException e) {
+            dropped.increment(batch.size());
+            log.error("write-behind of {} ids failed, mutations are dropped", batch.size(), e);
+        }
+    }
+}
@@ -14,11 +14,12 @@ CREATE TABLE `tb_role` (
                            `description` varchar(255) DEFAULT NULL,
                            `create_time` datetime DEFAULT NULL,
                            `update_time` datetime DEFAULT NULL,
+                           `version` bigint NOT NULL DEFAULT 0,
                            PRIMARY KEY (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=2 DEFAULT CHARSET=utf8mb4;
 
 -- 插入角色数据
-INSERT INTO `tb_role` VALUES (1,'admin','admin','admin','2021-09-08 17:09:15','2021-09-08 17:09:15');
+INSERT INTO `tb_role` VALUES (1,'admin','admin','admin','2021-09-08 17:09:15','2021-09-08 17:09:15',0);
 
 -- 用户表
 DROP TABLE IF EXISTS `tb_user`;
@@ -31,11 +32,12 @@ CREATE TABLE `tb_user` (
                            `description` varchar(255) DEFAULT NULL,
                            `create_time` datetime DEFAULT NULL,
                            `update_time` datetime DEFAULT NULL,
+                           `version` bigint NOT NULL DEFAULT 0,
                            PRIMARY KEY (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=2 DEFAULT CHARSET=utf8mb4;
 
 -- 插入用户数据
-INSERT INTO `tb_user` VALUES (1,'pdai','dfasdf','suzhou.daipeng@gmail.com',1212121213,'afsdfsaf','2021-09-08 17:09:15','2021-09-08 17:09:15');
+INSERT INTO `tb_user` VALUES (1,'pdai','dfasdf','suzhou.daipeng@gmail.com',1212121213,'afsdfsaf','2021-09-08 17:09:15','2021-09-08 17:09:15',0);
 
 -- 用户角色关联表
 DROP TABLE IF EXISTS `tb_user_role`;
@@ -45,4 +47,15 @@ CREATE TABLE `tb_user_role` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- 插入用户角色关联数据
-INSERT INTO `tb_user_role` VALUES (1,1);
\ No newline at end of file
+INSERT INTO `tb_user_role` VALUES (1,1);
+
+-- 主键号段表（pooled-lo），批量插入时按号段预分配主键，避免IDENTITY导致JDBC batch失效
+DROP TABLE IF EXISTS `tb_id_generator`;
+CREATE TABLE `tb_id_generator` (
+                                   `sequence_name` varchar(255) NOT NULL,
+                                   `next_val` bigint(20) DEFAULT NULL,
+                                   PRIMARY KEY (`sequence_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 号段起始值需大于已有数据的最大主键
+INSERT INTO `tb_id_generator` VALUES ('tb_user',2),('tb_role',2);
@@ -0,0 +1,101 @@
+package tech.pdai.springboot.mysql8.jpa.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用户角色索引测试
+ */
+class UserRoleIndexTest {
+
+    private UserRoleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserRoleIndex(0);
+    }
+
+    @Test
+    void testPutAndHasRole() {
+        // 测试乱序写入后按角色查询
+        index.put(1L, new long[]{30L, 10L, 20L});
+
+        assertTrue(index.hasRole(1L, 10L));
+        assertTrue(index.hasRole(1L, 30L));
+        assertFalse(index.hasRole(1L, 40L));
+        assertFalse(index.hasRole(2L, 10L));
+        assertArrayEquals(new long[]{10L, 20L, 30L}, index.getRoleIds(1L));
+        assertEquals(1, index.size());
+        assertEquals(3, index.memberships());
+    }
+
+    @Test
+    void testPutReplacesRoles() {
+        // 测试再次写入替换用户的全部角色，空数组即删除
+        index.put(1L, new long[]{10L, 20L});
+        index.put(1L, new long[]{30L});
+        assertFalse(index.hasRole(1L, 10L));
+        assertTrue(index.hasRole(1L, 30L));
+        assertEquals(1, index.memberships());
+
+        index.put(1L, new long[0]);
+        assertEquals(0, index.size());
+        assertEquals(0, index.memberships());
+    }
+
+    @Test
+    void testZeroIdIsAKey() {
+        // 测试id为0的用户
+        index.put(0L, new long[]{1L});
+
+        assertTrue(index.hasRole(0L, 1L));
+        assertFalse(index.hasRole(1L, 1L));
+    }
+
+    @Test
+    void testGrowAndRemove() {
+        // 测试扩容以及删除后探测链仍然完整
+        for (long user = 1; user <= 10000; user++) {
+            index.put(user, new long[]{user % 7, 100 + user % 11});
+        }
+        for (long user = 1; user <= 10000; user += 2) {
+            index.remove(user);
+        }
+
+        assertEquals(5000, index.size());
+        assertEquals(10000, index.memberships());
+        for (long user = 1; user <= 10000; user++) {
+            assertEquals(user % 2 == 0, index.hasRole(user, user % 7));
+            assertEquals(user % 2 == 0, index.hasRole(user, 100 + user % 11));
+        }
+    }
+
+    @Test
+    void testRemoveRole() {
+        // 测试删除角色会从所有用户中移除，没有角色的用户不再保留
+        index.put(1L, new long[]{10L, 20L});
+        index.put(2L, new long[]{20L, 30L});
+        for (long user = 3; user <= 100; user++) {
+            index.put(user, new long[]{20L});
+        }
+
+        index.removeRole(20L);
+
+        assertArrayEquals(new long[]{10L}, index.getRoleIds(1L));
+        assertArrayEquals(new long[]{30L}, index.getRoleIds(2L));
+        assertEquals(2, index.size());
+        assertEquals(2, index.memberships());
+    }
+
+    @Test
+    void testClear() {
+        index.put(1L, new long[]{10L});
+
+        index.clear();
+
+        assertFalse(index.hasRole(1L, 10L));
+        assertEquals(0, index.size());
+    }
+}
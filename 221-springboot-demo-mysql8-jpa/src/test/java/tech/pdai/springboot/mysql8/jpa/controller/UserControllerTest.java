@@ -3,26 +3,35 @@ package tech.pdai.springboot.mysql8.jpa.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
 import tech.pdai.springboot.mysql8.jpa.entity.Role;
 import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.projection.UserSummary;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
 import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
 import tech.pdai.springboot.mysql8.jpa.service.IUserService;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -70,8 +79,7 @@ class UserControllerTest {
     @Test
     void testAddNewUser() throws Exception {
         // 模拟新用户添加
-        when(userService.exists(any())).thenReturn(false);
-        when(userService.find(1L)).thenReturn(testUser);
+        when(userService.upsert(any(User.class), eq(UserFetchPlan.WITH_ROLES))).thenReturn(testUser);
 
         mockMvc.perform(post("/user/add")
                 .param("id", "1")
@@ -90,8 +98,7 @@ class UserControllerTest {
     @Test
     void testUpdateExistingUser() throws Exception {
         // 模拟用户更新
-        when(userService.exists(1L)).thenReturn(true);
-        when(userService.find(1L)).thenReturn(testUser);
+        when(userService.upsert(any(User.class), eq(UserFetchPlan.WITH_ROLES))).thenReturn(testUser);
 
         mockMvc.perform(post("/user/add")
                 .param("id", "1")
@@ -109,7 +116,7 @@ class UserControllerTest {
     @Test
     void testEditUser() throws Exception {
         // 测试获取单个用户
-        when(userService.find(1L)).thenReturn(testUser);
+        when(userService.findBatched(1L, UserFetchPlan.WITH_ROLES)).thenReturn(testUser);
 
         mockMvc.perform(get("/user/edit/1"))
                 .andExpect(status().isOk())
@@ -123,7 +130,7 @@ class UserControllerTest {
     @Test
     void testEditUserNotFound() throws Exception {
         // 测试用户不存在的情况
-        when(userService.find(999L)).thenReturn(null);
+        when(userService.findBatched(999L, UserFetchPlan.WITH_ROLES)).thenReturn(null);
 
         mockMvc.perform(get("/user/edit/999"))
                 .andExpect(status().isOk())
@@ -137,7 +144,7 @@ class UserControllerTest {
         List<User> users = Arrays.asList(testUser);
         Page<User> userPage = new PageImpl<>(users, PageRequest.of(0, 10), 1);
 
-        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class)))
+        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class), eq(UserFetchPlan.WITH_ROLES)))
                 .thenReturn(userPage);
 
         mockMvc.perform(get("/user/list")
@@ -163,7 +170,7 @@ class UserControllerTest {
         List<User> users = Arrays.asList(testUser, user2);
         Page<User> userPage = new PageImpl<>(users, PageRequest.of(1, 5), 10);
 
-        when(userService.findPage(any(UserQueryBean.class), eq(PageRequest.of(1, 5))))
+        when(userService.findPage(any(UserQueryBean.class), eq(PageRequest.of(1, 5)), eq(UserFetchPlan.WITH_ROLES)))
                 .thenReturn(userPage);
 
         mockMvc.perform(get("/user/list")
@@ -183,7 +190,7 @@ class UserControllerTest {
         // 测试空结果
         Page<User> emptyPage = new PageImpl<>(Arrays.asList(), PageRequest.of(0, 10), 0);
 
-        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class)))
+        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class), eq(UserFetchPlan.WITH_ROLES)))
                 .thenReturn(emptyPage);
 
         mockMvc.perform(get("/user/list")
@@ -196,6 +203,77 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.data.totalElements").value(0));
     }
 
+    @Test
+    void testListUserSummary() throws Exception {
+        // 测试投影分页，只返回id、用户名和邮箱
+        UserSummary summary = new SpelAwareProxyProjectionFactory().createProjection(UserSummary.class, testUser);
+        Page<UserSummary> summaryPage = new PageImpl<>(Arrays.asList(summary), PageRequest.of(0, 10), 1);
+
+        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class), eq(UserSummary.class)))
+                .thenReturn(summaryPage);
+
+        mockMvc.perform(get("/user/summary")
+                .param("pageSize", "10")
+                .param("pageNumber", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content[0].id").value(1))
+                .andExpect(jsonPath("$.data.content[0].userName").value("testuser"))
+                .andExpect(jsonPath("$.data.content[0].email").value("test@example.com"))
+                .andExpect(jsonPath("$.data.content[0].password").doesNotExist())
+                .andExpect(jsonPath("$.data.totalElements").value(1));
+    }
+
+    @Test
+    void testScrollUsers() throws Exception {
+        // 测试游标分页
+        String nextCursor = KeysetCursor.after(1L).encode();
+        KeysetSlice<User> slice = new KeysetSlice<>(Arrays.asList(testUser), nextCursor, null);
+
+        when(userService.findSlice(any(UserQueryBean.class), any(KeysetCursor.class), eq(10), eq(UserFetchPlan.WITH_ROLES)))
+                .thenReturn(slice);
+
+        mockMvc.perform(get("/user/scroll")
+                .param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("200"))
+                .andExpect(jsonPath("$.data.content[0].userName").value("testuser"))
+                .andExpect(jsonPath("$.data.nextCursor").value(nextCursor))
+                .andExpect(jsonPath("$.data.prevCursor").isEmpty());
+    }
+
+    @Test
+    void testBatchUsersKeepsOrder() throws Exception {
+        // 测试批量查询按请求顺序返回，不存在的为null
+        User otherUser = new User();
+        otherUser.setId(2L);
+        otherUser.setUserName("otheruser");
+        when(userService.findListBatched(Arrays.asList(2L, 999L, 1L), UserFetchPlan.WITH_ROLES))
+                .thenReturn(Arrays.asList(otherUser, null, testUser));
+
+        mockMvc.perform(get("/user/batch")
+                .param("ids", "2,999,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("200"))
+                .andExpect(jsonPath("$.data[0].userName").value("otheruser"))
+                .andExpect(jsonPath("$.data[1]").isEmpty())
+                .andExpect(jsonPath("$.data[2].userName").value("testuser"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTouchUserIsBuffered() throws Exception {
+        // 测试touch只提交延迟写入的修改
+        mockMvc.perform(post("/user/touch/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("200"));
+
+        ArgumentCaptor<UnaryOperator<User>> mutation = ArgumentCaptor.forClass(UnaryOperator.class);
+        verify(userService).updateBehind(eq(1L), mutation.capture());
+        User user = new User();
+        mutation.getValue().apply(user);
+        assertNotNull(user.getUpdateTime());
+    }
+
     @Test
     void testAddUserWithInvalidParameters() throws Exception {
         // 测试无效参数
@@ -211,7 +289,7 @@ class UserControllerTest {
         // 测试无效的分页参数
         Page<User> userPage = new PageImpl<>(Arrays.asList(testUser), PageRequest.of(0, 10), 1);
 
-        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class)))
+        when(userService.findPage(any(UserQueryBean.class), any(PageRequest.class), eq(UserFetchPlan.WITH_ROLES)))
                 .thenReturn(userPage);
 
         mockMvc.perform(get("/user/list")
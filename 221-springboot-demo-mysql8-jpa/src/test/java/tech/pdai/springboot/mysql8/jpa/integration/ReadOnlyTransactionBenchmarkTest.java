@@ -0,0 +1,116 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 只读事务测试 - 只读会话默认运行；读写事务与只读事务下每次读取的CPU时间和内存分配只输出到日志，
+ * 不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class ReadOnlyTransactionBenchmarkTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int ROUNDS = 500;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            User user = new User();
+            user.setUserName("readonly" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, PAGE_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testReadsUseReadOnlySession() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            User user = userService.findAll(PageRequest.of(0, 1)).getContent().get(0);
+            assertTrue(entityManager.unwrap(Session.class).isReadOnly(user));
+        });
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkReadWriteVsReadOnly() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        long[] readWriteCost = measure(readWrite);
+        long[] readOnlyCost = measure(readOnly);
+
+        log.info("read-write : {} ns cpu/read, {} bytes/read", readWriteCost[0], readWriteCost[1]);
+        log.info("read-only  : {} ns cpu/read, {} bytes/read", readOnlyCost[0], readOnlyCost[1]);
+    }
+
+    private long[] measure(TransactionTemplate template) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Runnable read = () -> template.executeWithoutResult(status ->
+                assertEquals(PAGE_SIZE, userDao.findAll(PageRequest.of(0, PAGE_SIZE)).getContent().size()));
+        // 预热
+        for (int i = 0; i < ROUNDS; i++) {
+            read.run();
+        }
+        long cpu = threadMXBean.getCurrentThreadCpuTime();
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            read.run();
+        }
+        return new long[]{(threadMXBean.getCurrentThreadCpuTime() - cpu) / ROUNDS,
+                (threadMXBean.getThreadAllocatedBytes(threadId) - bytes) / ROUNDS};
+    }
+}
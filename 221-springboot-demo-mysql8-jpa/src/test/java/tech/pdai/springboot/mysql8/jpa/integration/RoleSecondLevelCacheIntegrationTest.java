@@ -0,0 +1,81 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.query.RoleQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IRoleService;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二级缓存集成测试 - 验证Role实体缓存、查询缓存及失效
+ */
+@SpringBootTest
+@ActiveProfiles({"test", "cache"})
+class RoleSecondLevelCacheIntegrationTest {
+
+    @Autowired
+    private IRoleService roleService;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    private Role role;
+
+    @BeforeEach
+    void setUp() {
+        roleService.deleteAll();
+        role = new Role();
+        role.setName("CACHED");
+        role.setRoleKey("cached");
+        role.setCreateTime(LocalDateTime.now());
+        role.setUpdateTime(LocalDateTime.now());
+        roleService.save(role);
+
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        roleService.deleteAll();
+    }
+
+    @Test
+    void testEntityCacheHit() {
+        roleService.find(role.getId());
+        roleService.find(role.getId());
+
+        assertEquals(1, statistics.getSecondLevelCacheMissCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testQueryCacheHitAndInvalidation() {
+        RoleQueryBean queryBean = RoleQueryBean.builder().build();
+        roleService.findPage(queryBean, PageRequest.of(0, 10));
+        roleService.findPage(queryBean, PageRequest.of(0, 10));
+        assertTrue(statistics.getQueryCacheHitCount() >= 1);
+
+        // 写操作后查询缓存失效
+        role.setDescription("updated");
+        roleService.update(role);
+        long hits = statistics.getQueryCacheHitCount();
+        assertEquals("updated", roleService.findPage(queryBean, PageRequest.of(0, 10)).getContent().get(0).getDescription());
+        assertEquals(hits, statistics.getQueryCacheHitCount());
+    }
+}
@@ -0,0 +1,234 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.jpa.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量插入测试 - 对比原先的IDENTITY主键逐行插入、save(List) 与 saveInBatch(List, batchSize)
+ * <p>
+ * 语句数的对比默认运行；吞吐（rows/sec）只输出到日志，不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.statistics.enabled=true"})
+@ActiveProfiles("test")
+class UserBatchInsertBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+
+    private static final int SMALL_ROWS = 1_000;
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        deleteIdentityUsers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+        deleteIdentityUsers();
+    }
+
+    @Test
+    void testSaveInBatchBatchesInsertsUnlikeIdentity() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        statistics.clear();
+        saveIdentityUsers(SMALL_ROWS);
+        long identityStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        userService.saveInBatch(buildUsers(SMALL_ROWS, "batch"), BATCH_SIZE);
+        long batchStatements = statistics.getPrepareStatementCount();
+
+        log.info("{} rows: IDENTITY {} statements, saveInBatch {} statements", SMALL_ROWS, identityStatements,
+                batchStatements);
+        // IDENTITY要立即拿到主键，每行一条insert；pooled-lo按号段取主键，insert按batch发送
+        assertTrue(identityStatements >= SMALL_ROWS);
+        assertTrue(batchStatements < SMALL_ROWS / 10);
+        assertEquals(SMALL_ROWS, userDao.count());
+    }
+
+    @Test
+    void testSaveInBatchDetachesOnlySavedEntities() {
+        Role role = new Role();
+        role.setName("batch");
+        role.setRoleKey("batch");
+        role.setCreateTime(LocalDateTime.now());
+        role.setUpdateTime(LocalDateTime.now());
+        roleDao.save(role);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Role loaded = entityManager.find(Role.class, role.getId());
+                List<User> users = buildUsers(BATCH_SIZE + 1, "detach");
+                userService.saveInBatch(users, BATCH_SIZE);
+
+                // 调用方已加载的实体仍由持久化上下文管理
+                assertTrue(entityManager.contains(loaded));
+                assertFalse(entityManager.contains(users.get(0)));
+                assertFalse(entityManager.contains(users.get(BATCH_SIZE)));
+            });
+        } finally {
+            userDao.deleteAllInBatch();
+            roleDao.deleteById(role.getId());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkIdentityVsSaveVsSaveInBatch() {
+        // 预热
+        userService.saveInBatch(buildUsers(1_000, "warmup"), BATCH_SIZE);
+        saveIdentityUsers(1_000);
+        userDao.deleteAllInBatch();
+        deleteIdentityUsers();
+
+        long start = System.nanoTime();
+        saveIdentityUsers(ROWS);
+        long identityNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        userService.save(buildUsers(ROWS, "save"));
+        long saveNanos = System.nanoTime() - start;
+        assertEquals(ROWS, userDao.count());
+
+        start = System.nanoTime();
+        userService.saveInBatch(buildUsers(ROWS, "batch"), BATCH_SIZE);
+        long batchNanos = System.nanoTime() - start;
+        assertEquals(ROWS * 2L, userDao.count());
+
+        log.info("IDENTITY            : {} rows/sec", rowsPerSecond(identityNanos));
+        log.info("save(List)          : {} rows/sec", rowsPerSecond(saveNanos));
+        log.info("saveInBatch(List,{}): {} rows/sec", BATCH_SIZE, rowsPerSecond(batchNanos));
+    }
+
+    /**
+     * the insert path before pooled-lo ids: IDENTITY ids, flushed and cleared every batch size rows like
+     * saveInBatch, hibernate still sends one insert per row to read the generated key.
+     */
+    private void saveIdentityUsers(int rows) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < rows; i++) {
+                IdentityUser user = new IdentityUser();
+                user.setUserName("identity" + i);
+                user.setPassword("password");
+                user.setEmail("identity" + i + "@test.com");
+                user.setPhoneNumber(13800000000L + i);
+                user.setCreateTime(LocalDateTime.now());
+                user.setUpdateTime(LocalDateTime.now());
+                entityManager.persist(user);
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+        });
+    }
+
+    private void deleteIdentityUsers() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                entityManager.createQuery("delete from IdentityUser").executeUpdate());
+    }
+
+    private long rowsPerSecond(long nanos) {
+        return ROWS * 1_000_000_000L / Math.max(nanos, 1L);
+    }
+
+    private List<User> buildUsers(int rows, String prefix) {
+        List<User> users = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            User user = new User();
+            user.setUserName(prefix + i);
+            user.setPassword("password");
+            user.setEmail(prefix + i + "@test.com");
+            user.setPhoneNumber(13800000000L + i);
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * copy of the user columns with the IDENTITY id the user table had before.
+     */
+    @Getter
+    @Setter
+    @Entity(name = "IdentityUser")
+    @Table(name = "tb_user_identity")
+    static class IdentityUser {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @Column(name = "id", nullable = false)
+        private Long id;
+
+        @Column(name = "user_name", nullable = false)
+        private String userName;
+
+        @Column(name = "password", nullable = false)
+        private String password;
+
+        private String email;
+
+        @Column(name = "phone_number")
+        private Long phoneNumber;
+
+        @Column(name = "create_time")
+        private LocalDateTime createTime;
+
+        @Column(name = "update_time")
+        private LocalDateTime updateTime;
+    }
+}
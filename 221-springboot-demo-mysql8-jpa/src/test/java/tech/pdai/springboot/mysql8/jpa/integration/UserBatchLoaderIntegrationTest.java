@@ -0,0 +1,113 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量加载测试 - 并发的find(id)合并为少量findAllById
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.batch-loader.window-millis=20",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@ActiveProfiles("test")
+class UserBatchLoaderIntegrationTest {
+
+    private static final int USERS = 100;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        ids.clear();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserName("batch" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, USERS);
+        users.forEach(user -> ids.add(user.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testConcurrentFindsShareSelects() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<User>> futures = new ArrayList<>();
+        for (Long id : ids) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return userService.findBatched(id, UserFetchPlan.NONE);
+            }));
+        }
+        statistics.clear();
+        start.countDown();
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(ids.get(i), futures.get(i).get().getId());
+        }
+        executor.shutdown();
+
+        long selects = statistics.getPrepareStatementCount();
+        log.info("{} concurrent finds, {} selects", USERS, selects);
+        // 远少于每个id一条select
+        assertTrue(selects <= USERS / 10);
+    }
+
+    @Test
+    void testFindListBatchedKeepsOrder() {
+        List<Long> request = Arrays.asList(ids.get(3), -1L, ids.get(1), ids.get(3));
+
+        List<User> users = userService.findListBatched(request, UserFetchPlan.WITH_ROLES);
+
+        assertEquals(4, users.size());
+        assertEquals(ids.get(3), users.get(0).getId());
+        assertNull(users.get(1));
+        assertEquals(ids.get(1), users.get(2).getId());
+        assertEquals(ids.get(3), users.get(3).getId());
+        // roles在批量加载时已初始化，事务外可访问
+        assertNotNull(users.get(0).getRoles());
+        assertEquals(0, users.get(0).getRoles().size());
+    }
+}
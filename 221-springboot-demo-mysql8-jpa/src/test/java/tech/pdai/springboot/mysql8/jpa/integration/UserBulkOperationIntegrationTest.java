@@ -0,0 +1,105 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import com.github.wenhao.jpa.Specifications;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IRoleService;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 批量删除/更新集成测试 - 验证按集合删除时关联表同步清理，且IN列表按块拆分
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserBulkOperationIntegrationTest {
+
+    private static final int ROWS = 2_500;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IRoleService roleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Role role;
+
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        role = new Role();
+        role.setName("BULK");
+        role.setRoleKey("bulk");
+        role.setCreateTime(LocalDateTime.now());
+        role.setUpdateTime(LocalDateTime.now());
+        roleService.save(role);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User();
+            user.setUserName((i % 2 == 0 ? "even" : "odd") + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            user.setRoles(new HashSet<>(Collections.singletonList(role)));
+            users.add(user);
+        }
+        userService.saveInBatch(users, 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM tb_user_role");
+        userService.deleteAll();
+        roleService.deleteAll();
+    }
+
+    @Test
+    void testDeleteByIdsInBatchCleansJoinTable() {
+        List<Long> ids = users.stream().map(User::getId).collect(Collectors.toList());
+
+        assertEquals(ROWS, userService.deleteByIdsInBatch(ids));
+        assertEquals(0, userService.count());
+        assertEquals(0, countUserRoles());
+    }
+
+    @Test
+    void testDeleteRoleInBatchCleansJoinTable() {
+        assertEquals(1, roleService.deleteInBatch(Collections.singletonList(role)));
+        assertEquals(0, countUserRoles());
+        assertEquals(ROWS, userService.count());
+    }
+
+    @Test
+    void testUpdateWhere() {
+        int updated = userService.updateWhere(Specifications.<User>and().like("userName", "even%").build(),
+                Collections.singletonMap("description", "bulk updated"));
+
+        assertEquals(ROWS / 2, updated);
+        assertEquals(ROWS / 2, userService.count(Specifications.<User>and()
+                .eq("description", "bulk updated").build()));
+    }
+
+    private long countUserRoles() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_user_role", Long.class);
+    }
+}
@@ -0,0 +1,115 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 游离实体更新集成测试 - 带id但不带版本号的实体（例如请求绑定的User）按已有行更新，而不是当作新行插入
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserDetachedUpdateIntegrationTest {
+
+    private static final LocalDateTime CREATE_TIME = LocalDateTime.of(2021, 9, 8, 17, 9, 15);
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private IUserService userService;
+
+    private Long id;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+        User user = buildUser(null, "detached");
+        userService.save(user);
+        id = user.getId();
+        assertEquals(0L, user.getVersion());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+    }
+
+    @Test
+    void testUpdateDetachedEntityWithoutVersion() {
+        User updated = userService.update(buildUser(id, "detached2"));
+
+        assertEquals(id, updated.getId());
+        assertEquals("detached2", updated.getUserName());
+        assertEquals(1L, updated.getVersion());
+        User found = userService.find(id);
+        assertEquals("detached2", found.getUserName());
+        // 不可更新的列保持原值
+        assertEquals(CREATE_TIME, found.getCreateTime());
+        assertEquals(1, userService.count());
+    }
+
+    @Test
+    void testSaveDetachedEntityWithoutVersion() {
+        Role admin = new Role();
+        admin.setName("admin");
+        admin.setRoleKey("admin");
+        admin.setCreateTime(LocalDateTime.now());
+        admin.setUpdateTime(LocalDateTime.now());
+        roleDao.save(admin);
+        Role reference = new Role();
+        reference.setId(admin.getId());
+
+        User user = buildUser(id, "detached3");
+        user.setRoles(Collections.singleton(reference));
+        userService.save(user);
+
+        User found = userService.find(id, UserFetchPlan.WITH_ROLES);
+        assertEquals("detached3", found.getUserName());
+        assertEquals(1L, found.getVersion());
+        assertEquals("admin", found.getRoles().iterator().next().getRoleKey());
+        assertEquals(1, userService.count());
+    }
+
+    @Test
+    void testUpdateDetachedEntityWithStaleVersion() {
+        userService.update(buildUser(id, "detached4"));
+
+        // 带版本号时仍然做乐观锁检查
+        User stale = buildUser(id, "stale");
+        stale.setVersion(0L);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.update(stale));
+        assertEquals("detached4", userService.find(id).getUserName());
+    }
+
+    private static User buildUser(Long id, String userName) {
+        User user = new User();
+        user.setId(id);
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(userName + "@test.com");
+        user.setCreateTime(id == null ? CREATE_TIME : LocalDateTime.now());
+        user.setUpdateTime(LocalDateTime.now());
+        return user;
+    }
+}
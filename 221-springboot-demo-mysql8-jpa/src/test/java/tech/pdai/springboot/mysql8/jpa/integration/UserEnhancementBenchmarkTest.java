@@ -0,0 +1,94 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 字节码增强测试 - 1万个托管实体的堆占用和flush耗时只输出到日志，不是JMH基准，打了benchmark标签
+ * 运行: mvn test -Pbenchmark -Dtest=UserEnhancementBenchmarkTest，加-DskipEnhance得到未增强的对比结果
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserEnhancementBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        jdbcTemplate.update("INSERT INTO tb_user (id, user_name, password, phone_number, description, version) "
+                + "SELECT X + 1000000, CONCAT('enhance', X), REPEAT('p', 45), X, REPEAT('d', 255), 0 "
+                + "FROM SYSTEM_RANGE(1, ?)", ROWS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkManagedEntities() {
+        boolean enhanced = PersistentAttributeInterceptable.class.isAssignableFrom(User.class);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            System.gc();
+            long baseline = memory.getHeapMemoryUsage().getUsed();
+            List<User> users = entityManager.createQuery("select u from User u", User.class).getResultList();
+            System.gc();
+            long heapBytes = memory.getHeapMemoryUsage().getUsed() - baseline;
+            assertEquals(ROWS, users.size());
+
+            // 无修改时的flush只做脏检查
+            long start = System.nanoTime();
+            entityManager.flush();
+            long cleanFlushNanos = System.nanoTime() - start;
+
+            users.forEach(user -> user.setDescription("flushed"));
+            start = System.nanoTime();
+            entityManager.flush();
+            long dirtyFlushNanos = System.nanoTime() - start;
+
+            log.info("enhanced={}, heap per {} managed entities: {} KB", enhanced, ROWS, heapBytes / 1024);
+            log.info("enhanced={}, flush without changes: {} us", enhanced, cleanFlushNanos / 1_000);
+            log.info("enhanced={}, flush with {} updates: {} us", enhanced, ROWS, dirtyFlushNanos / 1_000);
+        });
+
+        assertEquals(ROWS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tb_user WHERE description = 'flushed'", Integer.class));
+    }
+}
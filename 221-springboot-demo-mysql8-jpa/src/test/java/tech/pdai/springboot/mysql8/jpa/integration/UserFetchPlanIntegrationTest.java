@@ -0,0 +1,121 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FetchPlan集成测试 - 验证分页查询的SQL语句数量
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class UserFetchPlanIntegrationTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+
+        Role role = new Role();
+        role.setName("ADMIN");
+        role.setRoleKey("admin");
+        role.setCreateTime(LocalDateTime.now());
+        role.setUpdateTime(LocalDateTime.now());
+        role = roleDao.save(role);
+
+        // 多于一页，保证count语句会执行
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE + 10; i++) {
+            User user = new User();
+            user.setUserName("fetchplan" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            user.setRoles(new HashSet<>(Collections.singletonList(role)));
+            users.add(user);
+        }
+        userDao.saveAll(users);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+    }
+
+    @Test
+    void testFindPageWithoutRoles() {
+        Page<User> page = userService.findPage(UserQueryBean.builder().build(), PageRequest.of(0, PAGE_SIZE),
+                UserFetchPlan.NONE);
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        // select + count
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testFindPageWithRoles() {
+        Page<User> page = userService.findPage(UserQueryBean.builder().build(), PageRequest.of(0, PAGE_SIZE),
+                UserFetchPlan.WITH_ROLES);
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        // select + count + 一次批量加载roles
+        assertEquals(3, statistics.getPrepareStatementCount());
+        // 事务外访问roles不会触发懒加载异常
+        page.getContent().forEach(user -> assertEquals(1, user.getRoles().size()));
+    }
+
+    @Test
+    void testFindWithRoles() {
+        Long id = userDao.findAll(PageRequest.of(0, 1)).getContent().get(0).getId();
+        statistics.clear();
+
+        User user = userService.find(id, UserFetchPlan.WITH_ROLES);
+
+        assertNotNull(user);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, user.getRoles().size());
+    }
+}
@@ -0,0 +1,115 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.KeysetCursor;
+import tech.pdai.springboot.mysql8.jpa.entity.response.KeysetSlice;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset分页测试 - 前后翻页默认运行；offset 与 keyset 在第1页和第10000页的延迟只输出到日志，
+ * 不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserKeysetPaginationBenchmarkTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int DEEP_PAGE = 10_000;
+
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < (DEEP_PAGE + 1) * PAGE_SIZE; i++) {
+            User user = new User();
+            user.setUserName("keyset" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, 1_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testScrollForwardAndBackward() {
+        KeysetSlice<User> first = userService.findSlice(null, KeysetCursor.first(), PAGE_SIZE);
+        assertEquals(PAGE_SIZE, first.getContent().size());
+        assertNull(first.getPrevCursor());
+        assertNotNull(first.getNextCursor());
+
+        KeysetSlice<User> second = userService.findSlice(null, KeysetCursor.decode(first.getNextCursor()), PAGE_SIZE);
+        assertTrue(second.getContent().get(0).getId() > first.getContent().get(PAGE_SIZE - 1).getId());
+
+        KeysetSlice<User> back = userService.findSlice(null, KeysetCursor.decode(second.getPrevCursor()), PAGE_SIZE);
+        assertEquals(first.getContent().get(0).getId(), back.getContent().get(0).getId());
+        assertNull(back.getPrevCursor());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkOffsetVsKeyset() {
+        Sort sort = Sort.by("id");
+        Page<User> beforeDeepPage = userService.findAll(PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE, sort));
+        Long deepKey = beforeDeepPage.getContent().get(PAGE_SIZE - 1).getId();
+
+        long offsetFirst = averageNanos(() -> userService.findAll(PageRequest.of(0, PAGE_SIZE, sort)));
+        long offsetDeep = averageNanos(() -> userService.findAll(PageRequest.of(DEEP_PAGE, PAGE_SIZE, sort)));
+        long keysetFirst = averageNanos(() -> userService.findSlice(null, KeysetCursor.first(), PAGE_SIZE));
+        long keysetDeep = averageNanos(() -> userService.findSlice(null, KeysetCursor.after(deepKey), PAGE_SIZE));
+
+        assertEquals(userService.findAll(PageRequest.of(DEEP_PAGE, PAGE_SIZE, sort)).getContent().get(0).getId(),
+                userService.findSlice(null, KeysetCursor.after(deepKey), PAGE_SIZE).getContent().get(0).getId());
+
+        log.info("offset page 1     : {} us", offsetFirst / 1_000);
+        log.info("offset page {} : {} us", DEEP_PAGE, offsetDeep / 1_000);
+        log.info("keyset page 1     : {} us", keysetFirst / 1_000);
+        log.info("keyset page {} : {} us", DEEP_PAGE, keysetDeep / 1_000);
+    }
+
+    private long averageNanos(Supplier<?> query) {
+        // 预热
+        for (int i = 0; i < ROUNDS; i++) {
+            query.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+}
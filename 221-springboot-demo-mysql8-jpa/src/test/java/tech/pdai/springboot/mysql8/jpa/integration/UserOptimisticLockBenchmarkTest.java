@@ -0,0 +1,133 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 乐观锁竞争测试 - 多个线程并发更新同样的10个用户，不丢失更新
+ * <p>
+ * 少量线程的正确性验证默认运行；64个线程的吞吐和重试次数只输出到日志，不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.update.max-attempts=100"})
+@ActiveProfiles("test")
+class UserOptimisticLockBenchmarkTest {
+
+    private static final int THREADS = 64;
+
+    private static final int SMALL_THREADS = 8;
+
+    private static final int USERS = 10;
+
+    private static final int UPDATES_PER_THREAD = 20;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        ids.clear();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserName("contention" + i);
+            user.setPassword("password");
+            user.setPhoneNumber(0);
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            userService.save(user);
+            ids.add(user.getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testContendedUpdatesAreNotLost() throws Exception {
+        contend(SMALL_THREADS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkContendedUpdates() throws Exception {
+        double retriesBefore = retries();
+        long nanos = contend(THREADS);
+
+        int updates = THREADS * UPDATES_PER_THREAD;
+        log.info("{} threads, {} updates on {} users: {} updates/sec, {} retries", THREADS, updates, USERS,
+                updates * 1_000_000_000L / Math.max(nanos, 1L), (long) (retries() - retriesBefore));
+    }
+
+    /**
+     * @param threads threads, each updating UPDATES_PER_THREAD times
+     * @return nanos of the updates, checked to be all applied
+     */
+    private long contend(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    // phoneNumber作为计数器，丢失更新会导致计数偏小
+                    userService.updateWithRetry(ids.get((offset + i) % USERS), user -> {
+                        user.setPhoneNumber(user.getPhoneNumber() + 1);
+                        user.setUpdateTime(LocalDateTime.now());
+                        return user;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        long total = 0;
+        for (Long id : ids) {
+            User user = userService.find(id);
+            assertEquals(user.getPhoneNumber(), user.getVersion().longValue());
+            total += user.getPhoneNumber();
+        }
+        assertEquals(threads * UPDATES_PER_THREAD, total);
+        return nanos;
+    }
+
+    private double retries() {
+        Counter counter = meterRegistry.find("jpa.update.retry").tag("entity", "User").counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
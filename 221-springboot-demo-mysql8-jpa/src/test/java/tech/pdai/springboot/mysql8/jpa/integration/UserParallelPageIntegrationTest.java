@@ -0,0 +1,111 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并行分页测试 - content与count并行执行，短页跳过count
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserParallelPageIntegrationTest {
+
+    private static final int ROWS = 25;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User();
+            user.setUserName("parallel" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testSameResultAsSequential() {
+        PageRequest pageRequest = PageRequest.of(1, 10, Sort.by("id"));
+
+        Page<User> sequential = userService.findAll(null, pageRequest);
+        Page<User> parallel = userService.findAllInParallel(null, pageRequest);
+
+        assertEquals(ROWS, parallel.getTotalElements());
+        assertEquals(sequential.getTotalPages(), parallel.getTotalPages());
+        assertEquals(sequential.getContent().stream().map(User::getId).collect(Collectors.toList()),
+                parallel.getContent().stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testCountSkippedForShortFirstPage() {
+        double skipped = skippedCount();
+
+        Page<User> page = userService.findAllInParallel(null, PageRequest.of(0, 50));
+
+        assertEquals(ROWS, page.getTotalElements());
+        // 总数由短页推出，count结果被丢弃（未开始时直接取消）
+        assertEquals(skipped + 1, skippedCount());
+    }
+
+    @Test
+    void testLatencyHistograms() {
+        for (int i = 0; i < 20; i++) {
+            userService.findAllInParallel(null, PageRequest.of(0, 10));
+        }
+
+        HistogramSnapshot content = meterRegistry.get("jpa.page.query").tag("entity", "User")
+                .tag("part", "content").timer().takeSnapshot();
+        HistogramSnapshot count = meterRegistry.get("jpa.page.query").tag("entity", "User")
+                .tag("part", "count").timer().takeSnapshot();
+        log.info("content: {}", content);
+        log.info("count  : {}", count);
+        assertTrue(content.count() >= 20);
+        assertTrue(count.count() >= 20);
+    }
+
+    private double skippedCount() {
+        Counter counter = meterRegistry.find("jpa.page.count.skipped").tag("entity", "User").counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,110 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.projection.UserSummary;
+import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 投影查询测试 - 投影只查询摘要列默认运行；100行分页在实体与投影两种方式下每次请求的内存分配只输出到日志，
+ * 不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserProjectionBenchmarkTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int ROUNDS = 200;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            User user = new User();
+            user.setUserName("projection" + i);
+            user.setPassword("password");
+            user.setEmail("projection" + i + "@test.com");
+            user.setDescription("description of user " + i);
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, PAGE_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testProjectionSelectsOnlySummaryColumns() throws Exception {
+        Page<UserSummary> page = userService.findPage(UserQueryBean.builder().build(), PageRequest.of(0, PAGE_SIZE),
+                UserSummary.class);
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        assertNotNull(page.getContent().get(0).getId());
+        assertTrue(page.getContent().get(0).getUserName().startsWith("projection"));
+        assertFalse(objectMapper.writeValueAsString(page).contains("password"));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkAllocationPerRequest() throws Exception {
+        long entityBytes = allocatedBytesPerRequest(() -> objectMapper.writeValueAsString(userService.findPage(
+                UserQueryBean.builder().build(), PageRequest.of(0, PAGE_SIZE), UserFetchPlan.WITH_ROLES)));
+        long projectionBytes = allocatedBytesPerRequest(() -> objectMapper.writeValueAsString(userService.findPage(
+                UserQueryBean.builder().build(), PageRequest.of(0, PAGE_SIZE), UserSummary.class)));
+
+        log.info("entity page     : {} bytes/request", entityBytes);
+        log.info("projection page : {} bytes/request", projectionBytes);
+    }
+
+    private long allocatedBytesPerRequest(Callable<?> request) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // 预热
+        for (int i = 0; i < ROUNDS; i++) {
+            request.call();
+        }
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            request.call();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / ROUNDS;
+    }
+}
@@ -0,0 +1,94 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询计划缓存集成测试 - 验证相同形状的Specification查询只翻译一次
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.statistics.enabled=true"})
+@ActiveProfiles("test")
+class UserQueryPlanCacheIntegrationTest {
+
+    private static final int USER_COUNT = 20;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAll();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = new User();
+            user.setUserName("plan" + i);
+            user.setPassword("password");
+            user.setEmail("plan" + i + "@test.com");
+            user.setPhoneNumber((long) i);
+            user.setDescription("plan cache");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userDao.saveAll(users);
+        statistics = sessionFactory.getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAll();
+    }
+
+    @Test
+    void testFindPageOfSameShapeHitsPlanCache() {
+        PageRequest pageRequest = PageRequest.of(0, 5);
+        userService.findPage(UserQueryBean.builder().name("plan1%").build(), pageRequest);
+        statistics.clear();
+
+        // 相同的查询条件、不同的参数值
+        assertEquals(5, userService.findPage(UserQueryBean.builder().name("plan%").build(), pageRequest)
+                .getContent().size());
+        assertEquals(0, statistics.getQueryPlanCacheMissCount());
+        assertTrue(statistics.getQueryPlanCacheHitCount() > 0);
+    }
+
+    @Test
+    void testNumericValuesAreBoundNotInlined() {
+        userService.findList(phoneNumber(1L));
+        statistics.clear();
+
+        // 数值不再作为字面量拼进JPQL, 不同的值共用一个查询计划
+        assertEquals(1, userService.findList(phoneNumber(2L)).size());
+        assertEquals(0, statistics.getQueryPlanCacheMissCount());
+    }
+
+    private static Specification<User> phoneNumber(Long phoneNumber) {
+        return (root, query, cb) -> cb.equal(root.get("phoneNumber"), phoneNumber);
+    }
+}
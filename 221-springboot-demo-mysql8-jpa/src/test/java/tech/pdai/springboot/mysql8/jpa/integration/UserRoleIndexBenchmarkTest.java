@@ -0,0 +1,310 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import com.sun.management.ThreadMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.cache.UserRoleIndex;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IRoleService;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用户角色索引测试 - 索引与实体判断结果一致、写入后索引增量更新默认运行；
+ * 1000万条关联下索引与加载User及其roles的角色判断耗时只输出到日志，不是JMH基准，打了benchmark标签，
+ * 运行: mvn test -Pbenchmark -Dtest=UserRoleIndexBenchmarkTest，可用-Dindex.users调整规模
+ * <p>
+ * 上千万行放不进内存数据库的堆，这里用target下的文件数据库
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.user-role-index.enabled=true",
+        "spring.datasource.url=jdbc:h2:file:./target/h2/user-role-index;DB_CLOSE_ON_EXIT=FALSE",
+        "logging.level.org.hibernate.SQL=info", "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=info"})
+@ActiveProfiles("test")
+class UserRoleIndexBenchmarkTest {
+
+    /**
+     * 索引规模：用户数 x 每个用户的角色数，默认1000万条关联，可用-Dindex.users调整
+     */
+    private static final int INDEX_USERS = Integer.getInteger("index.users", 1_000_000);
+
+    private static final int ROLES_PER_USER = 10;
+
+    private static final int ROLES = 1000;
+
+    private static final int QUERIES = 1 << 20;
+
+    /**
+     * 批量写入数据库的用户和角色从这个id之后开始，避开主键生成器分配的id
+     */
+    private static final long FIRST_ID = 1_000_000L;
+
+    private static final int ENTITY_CHECKS = 2000;
+
+    private static final int WRITE_CHUNK = 50_000;
+
+    /**
+     * 数据库中的规模，实体方式的判断每次都要查询数据库
+     */
+    private static final int DB_USERS = 500;
+
+    private static final int DB_ROLES = 50;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IRoleService roleService;
+
+    @Autowired
+    private UserRoleIndex userRoleIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Role> roles = new ArrayList<>();
+
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        roles.clear();
+        users.clear();
+        for (int i = 0; i < DB_ROLES; i++) {
+            Role role = new Role();
+            role.setName("index" + i);
+            role.setRoleKey("index" + i);
+            role.setCreateTime(LocalDateTime.now());
+            role.setUpdateTime(LocalDateTime.now());
+            roles.add(role);
+        }
+        roleService.save(roles);
+        for (int i = 0; i < DB_USERS; i++) {
+            User user = new User();
+            user.setUserName("index" + i);
+            user.setPassword("password");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            Set<Role> userRoles = new HashSet<>();
+            for (int k = 0; k < ROLES_PER_USER; k++) {
+                userRoles.add(roles.get((i * 7 + k * 3) % DB_ROLES));
+            }
+            user.setRoles(userRoles);
+            users.add(user);
+        }
+        userService.save(users);
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<Long> userIds = new ArrayList<>();
+        users.forEach(user -> userIds.add(user.getId()));
+        userService.deleteByIdsInBatch(userIds);
+        List<Long> roleIds = new ArrayList<>();
+        roles.forEach(role -> roleIds.add(role.getId()));
+        roleService.deleteByIdsInBatch(roleIds);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkIndexAtTenMillionMemberships() {
+        UserRoleIndex index = new UserRoleIndex(INDEX_USERS);
+        long start = System.currentTimeMillis();
+        for (long user = 1; user <= INDEX_USERS; user++) {
+            long[] roleIds = new long[ROLES_PER_USER];
+            for (int k = 0; k < ROLES_PER_USER; k++) {
+                roleIds[k] = (user * 7 + k * 101) % ROLES;
+            }
+            index.put(user, roleIds);
+        }
+        log.info("built index of {} memberships in {} ms", index.memberships(), System.currentTimeMillis() - start);
+
+        Random random = new Random(1);
+        long[] userIds = new long[QUERIES];
+        long[] roleIds = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            userIds[i] = 1 + random.nextInt(INDEX_USERS);
+            roleIds[i] = random.nextInt(ROLES);
+        }
+        // 预热
+        int hits = check(index, userIds, roleIds) + check(index, userIds, roleIds);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long elapsed = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            hits += check(index, userIds, roleIds);
+        }
+        elapsed = System.nanoTime() - elapsed;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        log.info("index hasRole: {} ns/op, {} bytes allocated in {} checks, {} hits",
+                String.format("%.1f", elapsed / (10.0 * QUERIES)), allocated, 10L * QUERIES, hits);
+        // 查询不分配内存，只容许计时与统计本身的少量分配
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void testIndexMatchesEntityCheck() {
+        Random random = new Random(1);
+        for (int i = 0; i < ENTITY_CHECKS; i++) {
+            long userId = users.get(random.nextInt(DB_USERS)).getId();
+            long roleId = roles.get(random.nextInt(DB_ROLES)).getId();
+            assertEquals(hasRoleByEntity(userId, roleId), userService.hasRole(userId, roleId));
+        }
+        assertEquals(DB_USERS * ROLES_PER_USER, userRoleIndex.memberships());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkIndexVersusEntityCheckAtTenMillionMemberships() {
+        try {
+            // 数据库中写入INDEX_USERS个用户及其角色，索引按同样的规则加入这些关联
+            jdbcTemplate.update("INSERT INTO tb_role (id, name, role_key, version) "
+                    + "SELECT X + ?, CONCAT('bench', X), CONCAT('bench', X), 0 FROM SYSTEM_RANGE(0, ?)",
+                    FIRST_ID, ROLES - 1);
+            long start = System.currentTimeMillis();
+            // 分段写入，每段一个事务，避免一个事务积累上千万行的undo
+            for (int from = 1; from <= INDEX_USERS; from += WRITE_CHUNK) {
+                int to = Math.min(from + WRITE_CHUNK - 1, INDEX_USERS);
+                jdbcTemplate.update("INSERT INTO tb_user (id, user_name, password, phone_number, version) "
+                        + "SELECT X + ?, CONCAT('bench', X), 'password', X, 0 FROM SYSTEM_RANGE(?, ?)",
+                        FIRST_ID, from, to);
+                jdbcTemplate.update("INSERT INTO tb_user_role (user_id, role_id) "
+                        + "SELECT U.X + ?, MOD(U.X * 7 + R.X * 101, ?) + ? "
+                        + "FROM SYSTEM_RANGE(?, ?) U, SYSTEM_RANGE(0, ?) R", FIRST_ID, ROLES, FIRST_ID, from, to,
+                        ROLES_PER_USER - 1);
+            }
+            for (long user = 1; user <= INDEX_USERS; user++) {
+                long[] roleIds = new long[ROLES_PER_USER];
+                for (int k = 0; k < ROLES_PER_USER; k++) {
+                    roleIds[k] = (user * 7 + k * 101) % ROLES + FIRST_ID;
+                }
+                userRoleIndex.put(user + FIRST_ID, roleIds);
+            }
+            log.info("wrote {} memberships in {} ms", (long) INDEX_USERS * ROLES_PER_USER,
+                    System.currentTimeMillis() - start);
+
+            Random random = new Random(1);
+            long[] userIds = new long[ENTITY_CHECKS];
+            long[] roleIds = new long[ENTITY_CHECKS];
+            for (int i = 0; i < ENTITY_CHECKS; i++) {
+                userIds[i] = FIRST_ID + 1 + random.nextInt(INDEX_USERS);
+                roleIds[i] = FIRST_ID + random.nextInt(ROLES);
+            }
+            // 预热
+            for (int i = 0; i < ENTITY_CHECKS; i++) {
+                hasRoleByEntity(userIds[i], roleIds[i]);
+                userService.hasRole(userIds[i], roleIds[i]);
+            }
+
+            long entityStart = System.nanoTime();
+            int entityHits = 0;
+            for (int i = 0; i < ENTITY_CHECKS; i++) {
+                if (hasRoleByEntity(userIds[i], roleIds[i])) {
+                    entityHits++;
+                }
+            }
+            long entityNanos = System.nanoTime() - entityStart;
+
+            long indexStart = System.nanoTime();
+            int indexHits = 0;
+            for (int i = 0; i < ENTITY_CHECKS; i++) {
+                if (userService.hasRole(userIds[i], roleIds[i])) {
+                    indexHits++;
+                }
+            }
+            long indexNanos = System.nanoTime() - indexStart;
+
+            log.info("hasRole at {} memberships: entity {} us/op, index {} us/op", userRoleIndex.memberships(),
+                    String.format("%.2f", entityNanos / 1000.0 / ENTITY_CHECKS),
+                    String.format("%.3f", indexNanos / 1000.0 / ENTITY_CHECKS));
+            assertEquals(entityHits, indexHits);
+        } finally {
+            for (long user = 1; user <= INDEX_USERS; user++) {
+                userRoleIndex.remove(user + FIRST_ID);
+            }
+            jdbcTemplate.update("DELETE FROM tb_user_role WHERE user_id > ?", FIRST_ID);
+            jdbcTemplate.update("DELETE FROM tb_user WHERE id > ?", FIRST_ID);
+            jdbcTemplate.update("DELETE FROM tb_role WHERE id >= ?", FIRST_ID);
+        }
+    }
+
+    @Test
+    void testIndexFollowsWrites() {
+        // 修改用户角色，提交后索引更新
+        User user = userService.find(users.get(0).getId(), UserFetchPlan.WITH_ROLES);
+        Role removed = user.getRoles().iterator().next();
+        Role added = roles.stream()
+                .filter(role -> user.getRoles().stream().noneMatch(own -> own.getId().equals(role.getId())))
+                .findFirst().orElseThrow(IllegalStateException::new);
+        user.getRoles().remove(removed);
+        user.getRoles().add(added);
+        userService.update(user);
+        assertFalse(userService.hasRole(user.getId(), removed.getId()));
+        assertTrue(userService.hasRole(user.getId(), added.getId()));
+
+        // 删除用户
+        userService.delete(users.get(1).getId());
+        assertEquals(0, userRoleIndex.getRoleIds(users.get(1).getId()).length);
+
+        // 批量删除绕过hibernate事件，由service通知索引
+        userService.deleteByIdsInBatch(Collections.singletonList(users.get(2).getId()));
+        assertEquals(0, userRoleIndex.getRoleIds(users.get(2).getId()).length);
+        assertEquals((DB_USERS - 2) * ROLES_PER_USER, userRoleIndex.memberships());
+
+        // upsert用语句写入关联表，由service通知索引
+        User upsert = new User();
+        upsert.setId(users.get(3).getId());
+        upsert.setUserName("index3");
+        upsert.setPassword("password");
+        upsert.setCreateTime(LocalDateTime.now());
+        upsert.setUpdateTime(LocalDateTime.now());
+        Role reference = new Role();
+        reference.setId(added.getId());
+        upsert.setRoles(Collections.singleton(reference));
+        userService.upsert(upsert);
+        assertArrayEquals(new long[]{added.getId()}, userRoleIndex.getRoleIds(upsert.getId()));
+        assertTrue(userService.find(upsert.getId(), UserFetchPlan.WITH_ROLES).getRoles().stream()
+                .allMatch(role -> role.getId().equals(added.getId())));
+        assertEquals((DB_USERS - 3) * ROLES_PER_USER + 1, userRoleIndex.memberships());
+    }
+
+    private boolean hasRoleByEntity(long userId, long roleId) {
+        User user = userService.find(userId, UserFetchPlan.WITH_ROLES);
+        return user != null && user.getRoles().stream().anyMatch(role -> role.getId() == roleId);
+    }
+
+    private static int check(UserRoleIndex index, long[] userIds, long[] roleIds) {
+        int hits = 0;
+        for (int i = 0; i < userIds.length; i++) {
+            if (index.hasRole(userIds[i], roleIds[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,155 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * single-flight压力测试 - 并发的相同读请求共享一次执行，报告数据库执行次数与请求数之比
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.single-flight.enabled=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@ActiveProfiles("test")
+class UserSingleFlightStressTest {
+
+    private static final int THREADS = 64;
+
+    private static final int CALLS_PER_THREAD = 200;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            User user = new User();
+            user.setUserName("flight" + i);
+            user.setPassword("password");
+            user.setDescription("single flight");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, 100);
+        userId = users.get(0).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testConcurrentFindsShareExecutions() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        double executedBefore = count("executed");
+        double coalescedBefore = count("coalesced");
+        statistics.clear();
+
+        run(() -> {
+            assertEquals(userId, userService.find(userId).getId());
+            return null;
+        });
+
+        long selects = statistics.getPrepareStatementCount();
+        double executed = count("executed") - executedBefore;
+        double coalesced = count("coalesced") - coalescedBefore;
+        log.info("find: {} calls, {} selects, {} coalesced, ratio {}", THREADS * CALLS_PER_THREAD, selects,
+                (long) coalesced, String.format("%.3f", selects / (double) (THREADS * CALLS_PER_THREAD)));
+        // 每次执行最多一条select，加入执行的调用不访问数据库；两个计数器并发更新，不要求严格相等
+        assertTrue(selects <= (long) executed, selects + " selects for " + (long) executed + " executions");
+        assertEquals(THREADS * CALLS_PER_THREAD, (long) (executed + coalesced));
+        assertTrue(coalesced > 0);
+    }
+
+    @Test
+    void testConcurrentPagesShareExecutions() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        UserQueryBean queryBean = UserQueryBean.builder().description("single%").build();
+        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by("id"));
+        double executedBefore = count("executed");
+        double coalescedBefore = count("coalesced");
+        statistics.clear();
+
+        run(() -> {
+            Page<User> page = userService.findPage(queryBean, pageRequest);
+            assertEquals(30, page.getTotalElements());
+            return null;
+        });
+
+        long statements = statistics.getPrepareStatementCount();
+        double executed = count("executed") - executedBefore;
+        double coalesced = count("coalesced") - coalescedBefore;
+        log.info("findPage: {} calls, {} statements, {} coalesced, ratio {}", THREADS * CALLS_PER_THREAD,
+                statements, (long) coalesced,
+                String.format("%.3f", statements / (double) (THREADS * CALLS_PER_THREAD)));
+        // 每次执行最多content和count两条语句
+        assertTrue(statements <= 2 * (long) executed, statements + " statements for " + (long) executed + " executions");
+        assertTrue(coalesced > 0);
+    }
+
+    private void run(Callable<Void> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < CALLS_PER_THREAD; j++) {
+                    call.call();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("jpa.single.flight", "entity", "User", "result", result).count();
+    }
+}
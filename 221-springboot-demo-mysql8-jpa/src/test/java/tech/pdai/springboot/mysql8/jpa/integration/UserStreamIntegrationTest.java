@@ -0,0 +1,116 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式读取测试 - 只分离流出的实体；读取100万行时堆内存保持平稳（benchmark标签，-Pbenchmark运行）
+ */
+@Slf4j
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+class UserStreamIntegrationTest {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int SMALL_ROWS = 2_500;
+
+    private static final long FIRST_ID = 1_000_001L;
+
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testStreamDetachesOnlyStreamedEntities() {
+        insertRows(SMALL_ROWS);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User loaded = entityManager.find(User.class, FIRST_ID);
+            List<User> streamed = new ArrayList<>();
+            try (Stream<User> stream = userService.stream(null)) {
+                stream.forEach(streamed::add);
+            }
+
+            assertEquals(SMALL_ROWS, streamed.size());
+            // 调用方事先加载的实体不被分离
+            assertTrue(entityManager.contains(loaded));
+            assertTrue(streamed.contains(loaded));
+            // 已经流出的整批实体被分离
+            assertFalse(entityManager.contains(streamed.get(1)));
+        });
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testStreamKeepsHeapFlat() {
+        insertRows(ROWS);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong rows = new AtomicLong();
+        AtomicLong maxGrowth = new AtomicLong();
+
+        userService.stream(null, user -> {
+            if (rows.incrementAndGet() % 100_000 == 0) {
+                System.gc();
+                maxGrowth.accumulateAndGet(memory.getHeapMemoryUsage().getUsed() - baseline, Math::max);
+            }
+        });
+
+        log.info("streamed {} rows, max heap growth {} KB", rows.get(), maxGrowth.get() / 1024);
+        assertEquals(ROWS, rows.get());
+        assertTrue(maxGrowth.get() < MAX_HEAP_GROWTH);
+    }
+
+    private void insertRows(int rows) {
+        jdbcTemplate.update("INSERT INTO tb_user (id, user_name, password, phone_number, version) "
+                + "SELECT X + 1000000, CONCAT('stream', X), 'password', X, 0 FROM SYSTEM_RANGE(1, ?)", rows);
+    }
+}
@@ -0,0 +1,216 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.ActiveProfiles;
+import redis.embedded.RedisServer;
+import tech.pdai.springboot.mysql8.jpa.cache.TwoLevelCacheManager;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二级缓存测试 - 验证未命中、L2命中、L1命中的读取路径，以及写入后的失效与跨节点失效
+ * <p>
+ * 各级的p99延迟只输出到日志，不是基准
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.cache.enabled=true", "spring.redis.port=6380"})
+@ActiveProfiles("test")
+class UserTwoLevelCacheBenchmarkTest {
+
+    private static final int USERS = 500;
+
+    private static final String CHANNEL = "jpa:cache:invalidation";
+
+    private static RedisServer redisServer;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(6380);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserName("cache" + i);
+            user.setPassword("password");
+            user.setDescription("two level cache");
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, 100);
+        ids.clear();
+        users.forEach(user -> ids.add(user.getId()));
+        cacheManager.getCache("User").clear();
+        cacheManager.getCache("User.page").clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testFindReadsThroughLevels() {
+        long missBefore = timer("miss").count();
+        long l2Before = timer("l2").count();
+        long l1Before = timer("l1").count();
+
+        // 第一轮全部未命中，从数据库加载并写入两级缓存
+        ids.forEach(id -> assertEquals(id, userService.find(id).getId()));
+        // 清空本地缓存，第二轮从redis读取
+        cacheManager.getTwoLevelCache("User").clearLocal();
+        ids.forEach(id -> assertEquals(id, userService.find(id).getId()));
+        // 第三轮命中本地缓存
+        ids.forEach(id -> assertEquals(id, userService.find(id).getId()));
+
+        assertEquals(USERS, timer("miss").count() - missBefore);
+        assertEquals(USERS, timer("l2").count() - l2Before);
+        assertEquals(USERS, timer("l1").count() - l1Before);
+        log.info("find p99: miss {} ms, l2 hit {} ms, l1 hit {} ms", p99(timer("miss")), p99(timer("l2")),
+                p99(timer("l1")));
+    }
+
+    @Test
+    void testWriteEvictsCachedEntity() {
+        Long id = ids.get(0);
+        assertEquals("two level cache", userService.find(id).getDescription());
+
+        // 缓存中的实例是共享的，修改数据库中的副本
+        User user = userDao.findById(id).orElseThrow(IllegalStateException::new);
+        user.setDescription("updated");
+        userService.update(user);
+        assertEquals("updated", userService.find(id).getDescription());
+
+        userService.delete(id);
+        assertNull(userService.find(id));
+    }
+
+    @Test
+    void testWriteClearsCachedPages() {
+        UserQueryBean queryBean = UserQueryBean.builder().description("two level%").build();
+        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by("id"));
+        assertEquals(USERS, userService.findPage(queryBean, pageRequest).getTotalElements());
+
+        User user = new User();
+        user.setUserName("cache" + USERS);
+        user.setPassword("password");
+        user.setDescription("two level cache");
+        user.setCreateTime(LocalDateTime.now());
+        user.setUpdateTime(LocalDateTime.now());
+        userService.save(user);
+
+        assertEquals(USERS + 1, userService.findPage(queryBean, pageRequest).getTotalElements());
+    }
+
+    @Test
+    void testWriteInvalidatesOtherNode() throws Exception {
+        // 模拟另一个节点：独立的缓存管理器，订阅同一个频道
+        TwoLevelCacheManager otherNode = new TwoLevelCacheManager(redisTemplate, CHANNEL, "jpa:cache:", 100,
+                Duration.ofSeconds(60), Duration.ofMinutes(10), new SimpleMeterRegistry());
+        otherNode.afterPropertiesSet();
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        container.addMessageListener(otherNode, new ChannelTopic(CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!container.isRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Long id = ids.get(0);
+            User cached = otherNode.getCache("User").get(id, () -> userDao.findById(id).orElse(null));
+            assertEquals("two level cache", cached.getDescription());
+            Cache<?, ?> otherLocal = (Cache<?, ?>) otherNode.getTwoLevelCache("User").getNativeCache();
+
+            User user = userDao.findById(id).orElseThrow(IllegalStateException::new);
+            user.setDescription("updated");
+            userService.update(user);
+
+            long start = System.nanoTime();
+            deadline = System.currentTimeMillis() + 5000;
+            while (otherLocal.getIfPresent(id) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            log.info("invalidation reached the other node in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            assertNull(otherLocal.getIfPresent(id));
+            User reloaded = otherNode.getCache("User").get(id, () -> userDao.findById(id).orElse(null));
+            assertEquals("updated", reloaded.getDescription());
+        } finally {
+            container.destroy();
+        }
+    }
+
+    private Timer timer(String result) {
+        Timer timer = meterRegistry.find("cache.two.level.get").tags("cache", "User", "result", result).timer();
+        assertTrue(timer != null, "timer of " + result + " not registered");
+        return timer;
+    }
+
+    private static String p99(Timer timer) {
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return String.format("%.3f", percentile.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return "n/a";
+    }
+}
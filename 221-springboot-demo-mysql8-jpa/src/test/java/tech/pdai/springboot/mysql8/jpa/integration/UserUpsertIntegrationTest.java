@@ -0,0 +1,185 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.constants.UserFetchPlan;
+import tech.pdai.springboot.mysql8.jpa.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.Role;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import javax.persistence.OptimisticLockException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * upsert集成测试 - 验证新行和已有行都只需一条写语句, 保留客户端传入的id
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class UserUpsertIntegrationTest {
+
+    private static final long USER_ID = 900_001L;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAll();
+        roleDao.deleteAll();
+    }
+
+    @Test
+    void testUpsertInsertsThenUpdates() {
+        // 新行和已有行都只有一条写语句, 不先查询是否存在, 也不回读
+        User inserted = userService.upsert(buildUser(USER_ID, "upsert", "first@test.com"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // 客户端传入的id被保留
+        assertEquals(USER_ID, inserted.getId());
+        assertEquals(0L, userService.find(USER_ID).getVersion());
+
+        statistics.clear();
+        User updated = userService.upsert(buildUser(USER_ID, "upsert2", "second@test.com"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(USER_ID, updated.getId());
+
+        User found = userService.find(USER_ID);
+        assertEquals("upsert2", found.getUserName());
+        assertEquals("second@test.com", found.getEmail());
+        // 冲突时版本号递增
+        assertEquals(1L, found.getVersion());
+        assertEquals(1, userService.count());
+    }
+
+    @Test
+    void testUpsertGeneratesMissingId() {
+        User inserted = userService.upsert(buildUser(null, "generated", "generated@test.com"));
+        assertNotNull(inserted.getId());
+        assertEquals("generated", userService.find(inserted.getId()).getUserName());
+    }
+
+    @Test
+    void testUpsertWithFetchPlanReadsRowBack() {
+        statistics.clear();
+        User inserted = userService.upsert(buildUser(USER_ID, "fetch", "fetch@test.com"), UserFetchPlan.WITH_ROLES);
+        // 一条写语句加一条带角色的查询
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0L, inserted.getVersion());
+        assertTrue(inserted.getRoles().isEmpty());
+    }
+
+    @Test
+    void testUpsertChecksVersion() {
+        User inserted = userService.upsert(buildUser(null, "version", "version@test.com"));
+
+        User current = buildUser(inserted.getId(), "version2", "version@test.com");
+        current.setVersion(0L);
+        assertEquals(1L, userService.upsert(current).getVersion());
+
+        // 过期的版本号不会覆盖已有的行
+        User stale = buildUser(inserted.getId(), "stale", "version@test.com");
+        stale.setVersion(0L);
+        assertThrows(OptimisticLockException.class, () -> userService.upsert(stale));
+        User found = userService.find(inserted.getId());
+        assertEquals("version2", found.getUserName());
+        assertEquals(1L, found.getVersion());
+    }
+
+    @Test
+    void testUpsertSavesRoles() {
+        Role admin = roleDao.save(buildRole("admin"));
+        Role guest = roleDao.save(buildRole("guest"));
+
+        User user = buildUser(null, "roles", "roles@test.com");
+        user.setRoles(Collections.singleton(reference(admin)));
+        User inserted = userService.upsert(user, UserFetchPlan.WITH_ROLES);
+        assertEquals(Collections.singleton("admin"), roleKeys(userService.find(inserted.getId(), UserFetchPlan.WITH_ROLES)));
+
+        User update = buildUser(inserted.getId(), "roles2", "roles@test.com");
+        update.setRoles(Collections.singleton(reference(guest)));
+        User updated = userService.upsert(update, UserFetchPlan.WITH_ROLES);
+        assertEquals("roles2", updated.getUserName());
+        // 列和关联一起写入, 版本号只递增一次
+        assertEquals(1L, updated.getVersion());
+        assertEquals(Collections.singleton("guest"), roleKeys(userService.find(inserted.getId(), UserFetchPlan.WITH_ROLES)));
+
+        // 未传入角色时保留已有的关联
+        userService.upsert(buildUser(inserted.getId(), "roles3", "roles@test.com"));
+        assertEquals(Collections.singleton("guest"), roleKeys(userService.find(inserted.getId(), UserFetchPlan.WITH_ROLES)));
+    }
+
+    @Test
+    void testExistsDoesNotLoadEntity() {
+        User inserted = userService.upsert(buildUser(null, "exists", "exists@test.com"));
+        statistics.clear();
+
+        assertTrue(userService.exists(inserted.getId()));
+        assertFalse(userService.exists(inserted.getId() + 1));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private Set<String> roleKeys(User user) {
+        return user.getRoles().stream().map(Role::getRoleKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * 请求中绑定的角色只有id
+     */
+    private Role reference(Role role) {
+        Role reference = new Role();
+        reference.setId(role.getId());
+        return reference;
+    }
+
+    private Role buildRole(String roleKey) {
+        Role role = new Role();
+        role.setName(roleKey);
+        role.setRoleKey(roleKey);
+        role.setDescription(roleKey);
+        role.setCreateTime(LocalDateTime.now());
+        role.setUpdateTime(LocalDateTime.now());
+        return role;
+    }
+
+    private User buildUser(Long id, String userName, String email) {
+        User user = new User();
+        user.setId(id);
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(email);
+        user.setCreateTime(LocalDateTime.now());
+        user.setUpdateTime(LocalDateTime.now());
+        return user;
+    }
+}
@@ -0,0 +1,172 @@
+package tech.pdai.springboot.mysql8.jpa.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
+import tech.pdai.springboot.mysql8.jpa.entity.User;
+import tech.pdai.springboot.mysql8.jpa.service.IUserService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 延迟写入测试 - 合并后的更新不丢失，容量小于用户数，调用方会被反压并自己写入缓冲
+ * <p>
+ * 少量更新的正确性验证默认运行；同步更新与延迟写入的吞吐只输出到日志，不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ */
+@Slf4j
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "jpa.update.max-attempts=100",
+        "jpa.write-behind.flush-interval-millis=50", "jpa.write-behind.batch-size=50",
+        "jpa.write-behind.capacity=80"})
+@ActiveProfiles("test")
+class UserWriteBehindBenchmarkTest {
+
+    private static final int THREADS = 16;
+
+    private static final int USERS = 100;
+
+    private static final int UPDATES_PER_THREAD = 500;
+
+    private static final int SMALL_UPDATES_PER_THREAD = 50;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userDao.deleteAllInBatch();
+        ids.clear();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserName("behind" + i);
+            user.setPassword("password");
+            user.setPhoneNumber(0);
+            user.setCreateTime(LocalDateTime.now());
+            user.setUpdateTime(LocalDateTime.now());
+            users.add(user);
+        }
+        userService.saveInBatch(users, USERS);
+        users.forEach(user -> ids.add(user.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDao.deleteAllInBatch();
+    }
+
+    @Test
+    void testWriteBehindCoalescesWithoutLosingUpdates() throws Exception {
+        writeBehind(SMALL_UPDATES_PER_THREAD);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkSynchronousUpdates() throws Exception {
+        long nanos = run(userService::updateWithRetry, UPDATES_PER_THREAD);
+
+        long versions = verifyCounts(UPDATES_PER_THREAD);
+        log.info("sync: {} updates/sec, {} row versions written", throughput(nanos, UPDATES_PER_THREAD), versions);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkWriteBehindUpdates() throws Exception {
+        writeBehind(UPDATES_PER_THREAD);
+    }
+
+    private void writeBehind(int updatesPerThread) throws Exception {
+        double coalescedBefore = count("coalesced");
+        double flushedBefore = count("flushed");
+
+        long nanos = run(userService::updateBehind, updatesPerThread);
+        long drainStart = System.nanoTime();
+        userService.flushBehind();
+        long drainNanos = System.nanoTime() - drainStart;
+
+        long versions = verifyCounts(updatesPerThread);
+        double coalesced = count("coalesced") - coalescedBefore;
+        double flushed = count("flushed") - flushedBefore;
+        log.info("write-behind: {} updates/sec, drained in {} ms, {} coalesced, {} row versions written",
+                throughput(nanos, updatesPerThread), drainNanos / 1_000_000, (long) coalesced, versions);
+        // 每次写入一行对应一个版本，合并的更新不产生版本
+        assertEquals((long) flushed, versions);
+        assertTrue(coalesced > 0);
+        assertEquals(0.0, meterRegistry.get("jpa.write.behind.pending").tag("entity", "User").gauge().value());
+    }
+
+    private long run(BiConsumer<Long, UnaryOperator<User>> update, int updatesPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < updatesPerThread; i++) {
+                    // phoneNumber作为计数器，丢失更新会导致计数偏小
+                    update.accept(ids.get((offset + i) % USERS), user -> {
+                        user.setPhoneNumber(user.getPhoneNumber() + 1);
+                        user.setUpdateTime(LocalDateTime.now());
+                        return user;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+        return nanos;
+    }
+
+    /**
+     * @param updatesPerThread updates of each thread
+     * @return row versions written
+     */
+    private long verifyCounts(int updatesPerThread) {
+        long total = 0;
+        long versions = 0;
+        for (Long id : ids) {
+            User user = userService.find(id);
+            total += user.getPhoneNumber();
+            versions += user.getVersion();
+        }
+        assertEquals(THREADS * updatesPerThread, total);
+        return versions;
+    }
+
+    private long throughput(long nanos, int updatesPerThread) {
+        return THREADS * updatesPerThread * 1_000_000_000L / Math.max(nanos, 1L);
+    }
+
+    private double count(String result) {
+        Counter counter = meterRegistry.find("jpa.write.behind").tag("entity", "User").tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
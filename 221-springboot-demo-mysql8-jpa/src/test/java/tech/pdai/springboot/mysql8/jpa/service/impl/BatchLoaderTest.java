@@ -0,0 +1,88 @@
+package tech.pdai.springboot.mysql8.jpa.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量加载测试
+ */
+class BatchLoaderTest {
+
+    private static final long WINDOW_MILLIS = 10;
+
+    private static final int MAX_BATCH_SIZE = 2;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private DistributionSummary batchSize;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+        batchSize = new SimpleMeterRegistry().summary("jpa.batch.loader.size");
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testKeysWithinWindowAreLoadedTogether() throws Exception {
+        BatchLoader<Long, String> loader = loader(keys -> keys.stream()
+                .collect(Collectors.toMap(Function.identity(), key -> "user" + key)));
+
+        CompletableFuture<String> first = loader.load(1L);
+        CompletableFuture<String> second = loader.load(2L);
+
+        assertEquals("user1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("user2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, batchSize.count());
+    }
+
+    @Test
+    void testErrorFailsEveryPendingLoad() {
+        // Error不是RuntimeException, 同一批的调用方也要收到异常而不是一直等待
+        AssertionError error = new AssertionError("failed");
+        BatchLoader<Long, String> loader = loader(keys -> {
+            throw error;
+        });
+
+        CompletableFuture<String> first = loader.load(1L);
+        CompletableFuture<String> second = loader.load(2L);
+        CompletableFuture<String> windowed = loader.load(3L);
+
+        for (CompletableFuture<String> future : new CompletableFuture[]{first, second, windowed}) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    void testMissingKeyCompletesWithNull() throws Exception {
+        BatchLoader<Long, String> loader = loader(keys -> Collections.emptyMap());
+
+        assertNull(loader.load(1L).get(5, TimeUnit.SECONDS));
+    }
+
+    private BatchLoader<Long, String> loader(Function<List<Long>, Map<Long, String>> batchLoad) {
+        return new BatchLoader<>(batchLoad, scheduler, WINDOW_MILLIS, MAX_BATCH_SIZE, batchSize);
+    }
+}
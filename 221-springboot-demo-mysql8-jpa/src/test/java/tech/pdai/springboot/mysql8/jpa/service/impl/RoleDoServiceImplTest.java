@@ -1,8 +1,10 @@
 package tech.pdai.springboot.mysql8.jpa.service.impl;
 
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -28,6 +30,9 @@ class RoleDoServiceImplTest {
     @Mock
     private IRoleDao roleDao;
 
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private SessionFactory sessionFactory;
+
     @InjectMocks
     private RoleDoServiceImpl roleService;
 
@@ -0,0 +1,145 @@
+package tech.pdai.springboot.mysql8.jpa.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * single-flight测试
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private Counter executed;
+
+    private Counter coalesced;
+
+    private SingleFlight singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executed = registry.counter("jpa.single.flight", "result", "executed");
+        coalesced = registry.counter("jpa.single.flight", "result", "coalesced");
+        singleFlight = new SingleFlight(executed, coalesced);
+    }
+
+    @Test
+    void testConcurrentCallsShareOneExecution() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+        // 第一个调用阻塞在执行中，其余调用加入同一次执行
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            running.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+        }
+        while (coalesced.count() < CALLERS - 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, calls.get());
+        assertEquals(1, executed.count());
+        assertEquals(CALLERS - 1, coalesced.count());
+    }
+
+    @Test
+    void testFinishedCallIsNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, (int) singleFlight.execute("key", calls::incrementAndGet));
+        assertEquals(2, (int) singleFlight.execute("key", calls::incrementAndGet));
+
+        assertEquals(2, executed.count());
+        assertEquals(0, coalesced.count());
+    }
+
+    @Test
+    void testDifferentKeysDoNotShare() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> blocked = executor.submit(() -> singleFlight.execute("a", () -> {
+            running.countDown();
+            await(release);
+            return "a";
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertEquals("b", singleFlight.execute("b", () -> "b"));
+        release.countDown();
+
+        assertEquals("a", blocked.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(2, executed.count());
+        assertEquals(0, coalesced.count());
+    }
+
+    @Test
+    void testFailureIsSharedAndNotKept() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            running.countDown();
+            await(release);
+            throw new IllegalStateException("failed");
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+        while (coalesced.count() < 1) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        // 同一次执行的调用方收到相同的异常
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderError.getCause() instanceof IllegalStateException);
+        assertSame(leaderError.getCause(), followerError.getCause());
+        executor.shutdown();
+
+        // 失败不会留下，下一次调用重新执行
+        assertEquals("retry", singleFlight.execute("key", () -> "retry"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
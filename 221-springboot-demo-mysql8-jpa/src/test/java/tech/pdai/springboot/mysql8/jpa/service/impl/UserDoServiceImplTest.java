@@ -3,23 +3,34 @@ package tech.pdai.springboot.mysql8.jpa.service.impl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 import tech.pdai.springboot.mysql8.jpa.dao.IUserDao;
 import tech.pdai.springboot.mysql8.jpa.entity.Role;
 import tech.pdai.springboot.mysql8.jpa.entity.User;
 import tech.pdai.springboot.mysql8.jpa.entity.query.UserQueryBean;
 
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -34,6 +45,15 @@ class UserDoServiceImplTest {
     @Mock
     private IUserDao userDao;
 
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private EntityManager entityManager;
+
+    @Mock
+    private TypedQuery<User> userQuery;
+
+    @Mock
+    private TypedQuery<Long> countQuery;
+
     @InjectMocks
     private UserDoServiceImpl userService;
 
@@ -158,6 +178,32 @@ class UserDoServiceImplTest {
         verify(userDao, times(1)).deleteById(1L);
     }
 
+    @Test
+    void testDeleteUserEvictsCacheAfterCommit() {
+        CacheManager cacheManager = new TransactionAwareCacheManagerProxy(new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(userService, "cacheManager", cacheManager);
+        Cache cache = cacheManager.getCache("User");
+        Cache pages = cacheManager.getCache("User.page");
+        cache.put(1L, testUser);
+        pages.put("page", Collections.singletonList(testUser));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.delete(1L);
+
+            // 提交前缓存不变，并发读取不会把旧行重新放入缓存
+            assertThat(cache.get(1L)).isNotNull();
+            assertThat(pages.get("page")).isNotNull();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(pages.get("page")).isNull();
+    }
+
     @Test
     void testExistsUser() {
         // Mock DAO行为
@@ -198,10 +244,12 @@ class UserDoServiceImplTest {
 
         PageRequest pageRequest = PageRequest.of(0, 10);
         List<User> users = Arrays.asList(testUser);
-        Page<User> userPage = new PageImpl<>(users, pageRequest, 1);
 
-        // Mock DAO行为
-        when(userDao.findAll(any(Specification.class), eq(pageRequest))).thenReturn(userPage);
+        // Mock JPQL查询行为
+        ReflectionTestUtils.setField(userService, "entityManager", entityManager);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(userQuery);
+        when(entityManager.createQuery(anyString(), eq(Long.class))).thenReturn(countQuery);
+        when(userQuery.getResultList()).thenReturn(users);
 
         // 调用服务方法
         Page<User> result = userService.findPage(queryBean, pageRequest);
@@ -211,8 +259,13 @@ class UserDoServiceImplTest {
         assertThat(result.getTotalElements()).isEqualTo(1);
         assertThat(result.getContent().get(0).getUserName()).isEqualTo("testuser");
 
-        // 验证DAO方法被调用
-        verify(userDao, times(1)).findAll(any(Specification.class), eq(pageRequest));
+        // 验证只绑定参数值
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(1)).createQuery(jpql.capture(), eq(User.class));
+        assertThat(jpql.getValue()).contains("where e.userName like :p0 and e.description like :p1");
+        verify(userQuery, times(1)).setParameter("p0", "test");
+        verify(userQuery, times(1)).setParameter("p1", "测试");
+        verify(userQuery, times(1)).setMaxResults(10);
     }
 
     @Test
@@ -221,10 +274,12 @@ class UserDoServiceImplTest {
         UserQueryBean queryBean = UserQueryBean.builder().build();
         PageRequest pageRequest = PageRequest.of(0, 10);
         List<User> users = Arrays.asList(testUser);
-        Page<User> userPage = new PageImpl<>(users, pageRequest, 1);
 
-        // Mock DAO行为
-        when(userDao.findAll(any(Specification.class), eq(pageRequest))).thenReturn(userPage);
+        // Mock JPQL查询行为
+        ReflectionTestUtils.setField(userService, "entityManager", entityManager);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(userQuery);
+        when(entityManager.createQuery(anyString(), eq(Long.class))).thenReturn(countQuery);
+        when(userQuery.getResultList()).thenReturn(users);
 
         // 调用服务方法
         Page<User> result = userService.findPage(queryBean, pageRequest);
@@ -233,8 +288,54 @@ class UserDoServiceImplTest {
         assertThat(result.getContent()).hasSize(1);
         assertThat(result.getTotalElements()).isEqualTo(1);
 
-        // 验证DAO方法被调用
-        verify(userDao, times(1)).findAll(any(Specification.class), eq(pageRequest));
+        // 验证没有where条件和参数
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(1)).createQuery(jpql.capture(), eq(User.class));
+        assertThat(jpql.getValue()).doesNotContain("where");
+        verify(userQuery, never()).setParameter(anyString(), any());
+    }
+
+    @Test
+    void testFindPageReusesCompiledQuery() {
+        // 准备测试数据 - 相同查询条件、不同参数值
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        // Mock JPQL查询行为
+        ReflectionTestUtils.setField(userService, "entityManager", entityManager);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(userQuery);
+        when(entityManager.createQuery(anyString(), eq(Long.class))).thenReturn(countQuery);
+        when(userQuery.getResultList()).thenReturn(Collections.emptyList());
+
+        // 调用服务方法
+        userService.findPage(UserQueryBean.builder().name("a%").build(), pageRequest);
+        userService.findPage(UserQueryBean.builder().name("b%").build(), pageRequest);
+
+        // 验证JPQL相同，元模型只解析一次
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(2)).createQuery(jpql.capture(), eq(User.class));
+        assertThat(jpql.getAllValues().get(0)).isEqualTo(jpql.getAllValues().get(1));
+        verify(entityManager, times(1)).getMetamodel();
+    }
+
+    @Test
+    void testFindPageCompilesEachSort() {
+        // Mock JPQL查询行为
+        ReflectionTestUtils.setField(userService, "entityManager", entityManager);
+        when(entityManager.createQuery(anyString(), eq(User.class))).thenReturn(userQuery);
+        when(entityManager.createQuery(anyString(), eq(Long.class))).thenReturn(countQuery);
+        when(userQuery.getResultList()).thenReturn(Collections.emptyList());
+
+        // 调用服务方法 - 相同查询条件、不同排序
+        UserQueryBean queryBean = UserQueryBean.builder().name("a%").build();
+        userService.findPage(queryBean, PageRequest.of(0, 10, Sort.by("userName")));
+        userService.findPage(queryBean, PageRequest.of(0, 10, Sort.by(Sort.Order.desc("userName").ignoreCase())));
+
+        // 验证排序属于查询形状，各自编译
+        ArgumentCaptor<String> jpql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager, times(2)).createQuery(jpql.capture(), eq(User.class));
+        assertThat(jpql.getAllValues().get(0)).endsWith("order by e.userName asc");
+        assertThat(jpql.getAllValues().get(1)).endsWith("order by lower(e.userName) desc");
+        verify(entityManager, times(2)).getMetamodel();
     }
 
     @Test
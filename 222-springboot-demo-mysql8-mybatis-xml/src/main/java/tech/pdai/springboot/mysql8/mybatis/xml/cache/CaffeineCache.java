@@ -0,0 +1,63 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.ibatis.cache.Cache;
+
+import java.time.Duration;
+
+/**
+ * bounded in-process store of a MybatisCache.
+ *
+ * @author pdai
+ */
+public class CaffeineCache implements Cache {
+
+    private final String id;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> cache;
+
+    /**
+     * init.
+     *
+     * @param id               namespace
+     * @param maximumSize      max entries
+     * @param expireAfterWrite expiry of entries
+     */
+    public CaffeineCache(String id, long maximumSize, Duration expireAfterWrite) {
+        this.id = id;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        return cache.asMap().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public int getSize() {
+        return (int) cache.estimatedSize();
+    }
+}
@@ -0,0 +1,76 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.cache;
+
+import org.apache.ibatis.cache.Cache;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * store of a MybatisCache shared by all nodes: one redis hash of serialized results per namespace, so clear is a
+ * single delete.
+ * fields are the string form of the mybatis cache key, which holds the statement id, the sql and the parameters.
+ *
+ * @author pdai
+ */
+public class RedisCache implements Cache {
+
+    private final String id;
+
+    private final String key;
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+
+    private final HashOperations<String, String, byte[]> hashOperations;
+
+    private final Duration timeToLive;
+
+    /**
+     * init.
+     *
+     * @param id            namespace
+     * @param redisTemplate template with string keys and byte array hash values
+     * @param keyPrefix     prefix of the redis key of the namespace
+     * @param timeToLive    time to live of the namespace after its last put
+     */
+    public RedisCache(String id, RedisTemplate<String, byte[]> redisTemplate, String keyPrefix, Duration timeToLive) {
+        this.id = id;
+        this.key = keyPrefix + id;
+        this.redisTemplate = redisTemplate;
+        this.hashOperations = redisTemplate.opsForHash();
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        hashOperations.put(this.key, key.toString(), (byte[]) value);
+        redisTemplate.expire(this.key, timeToLive);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return hashOperations.get(this.key, key.toString());
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        hashOperations.delete(this.key, key.toString());
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        redisTemplate.delete(key);
+    }
+
+    @Override
+    public int getSize() {
+        Long size = hashOperations.size(key);
+        return size == null ? 0 : size.intValue();
+    }
+}
@@ -0,0 +1,60 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import tech.pdai.springboot.mysql8.mybatis.xml.cache.CaffeineCache;
+import tech.pdai.springboot.mysql8.mybatis.xml.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.xml.cache.RedisCache;
+
+import java.time.Duration;
+
+/**
+ * store of the mapper second level caches, selected by mybatis.cache.type.
+ *
+ * @author pdai
+ */
+@Configuration
+public class MybatisCacheConfig {
+
+    /**
+     * bounded caffeine cache in each node, the default.
+     *
+     * @param maximumSize max entries of each namespace
+     * @param timeToLive  expiry of entries
+     * @return cache manager
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mybatis.cache.type", havingValue = "caffeine", matchIfMissing = true)
+    public MybatisCacheManager caffeineMybatisCacheManager(
+            @Value("${mybatis.cache.maximum-size:10000}") long maximumSize,
+            @Value("${mybatis.cache.time-to-live:10m}") Duration timeToLive) {
+        return new MybatisCacheManager(id -> new CaffeineCache(id, maximumSize, timeToLive));
+    }
+
+    /**
+     * redis shared by all nodes, so a write on one node is seen by the others.
+     *
+     * @param factory    factory
+     * @param keyPrefix  prefix of the redis keys
+     * @param timeToLive time to live of a namespace after its last put
+     * @return cache manager
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mybatis.cache.type", havingValue = "redis")
+    public MybatisCacheManager redisMybatisCacheManager(RedisConnectionFactory factory,
+                                                       @Value("${mybatis.cache.key-prefix:mybatis:cache:}") String keyPrefix,
+                                                       @Value("${mybatis.cache.time-to-live:10m}") Duration timeToLive) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return new MybatisCacheManager(id -> new RedisCache(id, template, keyPrefix, timeToLive));
+    }
+}
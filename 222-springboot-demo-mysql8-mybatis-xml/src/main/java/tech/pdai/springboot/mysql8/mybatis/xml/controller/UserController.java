@@ -1,6 +1,9 @@
 package tech.pdai.springboot.mysql8.mybatis.xml.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -9,6 +12,9 @@ import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.UserQueryBean;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.response.ResponseResult;
 import tech.pdai.springboot.mysql8.mybatis.xml.service.IUserService;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -22,6 +28,9 @@ public class UserController {
     @Autowired
     private IUserService userService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * @param user user param
      * @return user
@@ -58,4 +67,30 @@ public class UserController {
     public ResponseResult<List<User>> list(UserQueryBean userQueryBean) {
         return ResponseResult.success(userService.findList(userQueryBean));
     }
+
+    /**
+     * export users as newline delimited json. users are written to the response as they are read from the
+     * database, so memory use does not grow with the number of users.
+     *
+     * @param userQueryBean query
+     * @param response      response
+     * @throws IOException if the response cannot be written
+     */
+    @ApiOperation("Export User List")
+    @GetMapping("export")
+    public void export(UserQueryBean userQueryBean, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            userService.streamList(userQueryBean, user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package tech.pdai.springboot.mysql8.mybatis.xml.dao;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.User;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.UserQueryBean;
 
@@ -14,6 +16,23 @@ public interface IUserDao {
 
     List<User> findList(UserQueryBean userQueryBean);
 
+    /**
+     * streaming findList, users are ordered by id and come with their roles. the cursor must be read and closed
+     * within the transaction that opened it.
+     *
+     * @param userQueryBean query
+     * @return cursor of users
+     */
+    Cursor<User> streamList(UserQueryBean userQueryBean);
+
+    /**
+     * streaming findList, the handler gets each user with its roles.
+     *
+     * @param userQueryBean query
+     * @param handler       user handler
+     */
+    void streamList(UserQueryBean userQueryBean, ResultHandler<User> handler);
+
     User findById(Long id);
 
     int deleteById(Long id);
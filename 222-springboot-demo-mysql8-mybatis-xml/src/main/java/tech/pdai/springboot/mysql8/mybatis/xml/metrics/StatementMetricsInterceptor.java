@@ -0,0 +1,262 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.metrics;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * records latency, rows, batch sizes and slow calls of each mapped statement.
+ * the executor methods give the mapped statement of a call, it is kept in a thread local for the statement
+ * handler the call creates, so the jdbc execution is timed apart from the call. statements run while another is
+ * being executed, nested selects, are part of the outer execution. statement handlers are prepared only when the
+ * executor has no statement for the sql, so prepares against executions give how often statements are reused.
+ *
+ * @author pdai
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {}),
+        @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "queryCursor", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<StatementStats> current = new ThreadLocal<>();
+
+    private final long slowThresholdNanos;
+
+    private final int slowSamples;
+
+    /**
+     * init.
+     *
+     * @param slowThresholdNanos calls that take at least this long are sampled with their parameters
+     * @param slowSamples        slow calls kept per statement
+     */
+    public StatementMetricsInterceptor(long slowThresholdNanos, int slowSamples) {
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.slowSamples = slowSamples;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            return "prepare".equals(invocation.getMethod().getName()) ? prepare(invocation) : execute(invocation);
+        }
+        switch (invocation.getMethod().getName()) {
+            case "flushStatements":
+                return recordBatches(invocation.proceed());
+            case "commit":
+                // commit flushes a batch executor from within, flush before so the batches are seen
+                recordBatches(((Executor) invocation.getTarget()).flushStatements());
+                return invocation.proceed();
+            default:
+                return call(invocation);
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+    /**
+     * @return counters of all statements called since the start or the last reset
+     */
+    public Collection<StatementStats> getStatements() {
+        return Collections.unmodifiableCollection(statements.values());
+    }
+
+    /**
+     * @param id id of the mapped statement
+     * @return counters of the statement, null if it was not called
+     */
+    public StatementStats getStatement(String id) {
+        return statements.get(id);
+    }
+
+    /**
+     * @return share of the executions of all statements that reused a prepared statement
+     */
+    public double getStatementReuseRatio() {
+        long uses = 0;
+        long prepares = 0;
+        for (StatementStats stats : statements.values()) {
+            uses += stats.getStatementUses();
+            prepares += stats.getPrepares();
+        }
+        return StatementStats.reuseRatio(uses, prepares);
+    }
+
+    /**
+     * drop all counters.
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    private Object call(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        StatementStats stats = stats(ms);
+        StatementStats outer = current.get();
+        current.set(stats);
+        boolean failed = true;
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            failed = false;
+            recordResult(stats, args, result);
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            current.set(outer);
+            stats.recordCall(elapsed, failed);
+            if (elapsed >= slowThresholdNanos) {
+                recordSlow(stats, ms, args, elapsed);
+            }
+        }
+    }
+
+    private Object prepare(Invocation invocation) throws Throwable {
+        StatementStats stats = current.get();
+        if (stats != null) {
+            stats.recordPrepare();
+        }
+        return invocation.proceed();
+    }
+
+    private Object execute(Invocation invocation) throws Throwable {
+        StatementStats stats = current.get();
+        if (stats == null) {
+            return invocation.proceed();
+        }
+        current.set(null);
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            stats.recordExecution(System.nanoTime() - start);
+            current.set(stats);
+        }
+    }
+
+    private static void recordResult(StatementStats stats, Object[] args, Object result) {
+        if (result instanceof List) {
+            // rows given to a result handler are not returned
+            if (args.length > 3 && args[3] == Executor.NO_RESULT_HANDLER) {
+                stats.recordRows(((List<?>) result).size());
+            }
+        } else if (result instanceof Integer) {
+            int updated = (Integer) result;
+            if (updated != BatchExecutor.BATCH_UPDATE_RETURN_VALUE && updated > 0) {
+                stats.recordUpdatedRows(updated);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object recordBatches(Object result) {
+        for (BatchResult batchResult : (List<BatchResult>) result) {
+            stats(batchResult.getMappedStatement()).recordBatch(batchResult.getUpdateCounts());
+        }
+        return result;
+    }
+
+    private StatementStats stats(MappedStatement ms) {
+        StatementStats stats = statements.get(ms.getId());
+        if (stats == null) {
+            stats = statements.computeIfAbsent(ms.getId(), id -> new StatementStats(id, slowSamples));
+        }
+        return stats;
+    }
+
+    private static void recordSlow(StatementStats stats, MappedStatement ms, Object[] args, long elapsed) {
+        Object parameter = args[1];
+        try {
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+            stats.recordSlow(new StatementStats.SlowStatement(Instant.now(), elapsed / 1_000_000d,
+                    boundSql.getSql().replaceAll("\\s+", " ").trim(),
+                    parameters(ms.getConfiguration(), parameter, boundSql)));
+        } catch (RuntimeException e) {
+            // a failed call may not bind again, keep its own exception
+            stats.recordSlow(new StatementStats.SlowStatement(Instant.now(), elapsed / 1_000_000d, null,
+                    Collections.emptyList()));
+        }
+    }
+
+    /**
+     * values bound to the placeholders, resolved as the parameter handler of mybatis does.
+     */
+    private static List<String> parameters(Configuration configuration, Object parameter, BoundSql boundSql) {
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        List<String> values = new ArrayList<>();
+        MetaObject metaObject = null;
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameter);
+                }
+                value = metaObject.getValue(property);
+            }
+            String text = String.valueOf(value);
+            values.add(text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text);
+        }
+        return values;
+    }
+}
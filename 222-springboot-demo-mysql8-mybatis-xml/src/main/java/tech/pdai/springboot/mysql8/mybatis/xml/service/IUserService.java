@@ -4,6 +4,7 @@ import tech.pdai.springboot.mysql8.mybatis.xml.entity.User;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.UserQueryBean;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 
 /**
@@ -13,6 +14,14 @@ public interface IUserService {
 
     List<User> findList(UserQueryBean userQueryBean);
 
+    /**
+     * pass the users of a query with their roles to the consumer one by one, without loading the whole result.
+     *
+     * @param userQueryBean query
+     * @param consumer      user consumer
+     */
+    void streamList(UserQueryBean userQueryBean, Consumer<User> consumer);
+
     User findById(Long id);
 
     int deleteById(Long id);
@@ -1,12 +1,17 @@
 package tech.pdai.springboot.mysql8.mybatis.xml.service.impl;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tech.pdai.springboot.mysql8.mybatis.xml.dao.IUserDao;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.User;
 import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.UserQueryBean;
 import tech.pdai.springboot.mysql8.mybatis.xml.service.IUserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class UserDoServiceImpl implements IUserService {
@@ -30,6 +35,19 @@ public class UserDoServiceImpl implements IUserService {
         return userDao.findList(userQueryBean);
     }
 
+    /**
+     * the cursor needs the connection of the session open while iterating, hence the transaction.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamList(UserQueryBean userQueryBean, Consumer<User> consumer) {
+        try (Cursor<User> cursor = userDao.streamList(userQueryBean)) {
+            cursor.forEach(consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public User findById(Long id) {
         return userDao.findById(id);
@@ -0,0 +1,94 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tech.pdai.springboot.mysql8.mybatis.xml.cache.MybatisCache;
+import tech.pdai.springboot.mysql8.mybatis.xml.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.xml.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.mybatis.xml.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.xml.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.RoleQueryBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二级缓存集成测试（caffeine） - 验证mapper xml中的{@code <cache>}配置：命中、写入后的失效以及跨用户/角色namespace的失效
+ * <p>
+ * 不开启测试事务，mapper调用各自提交，结果才会进入缓存
+ *
+ * @author pdai
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MybatisCacheIntegrationTest {
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private MybatisCacheManager cacheManager;
+
+    private MybatisCache userCache;
+
+    private MybatisCache roleCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = cacheManager.getCache(IUserDao.class.getName());
+        roleCache = cacheManager.getCache(IRoleDao.class.getName());
+        userCache.clear();
+        roleCache.clear();
+    }
+
+    @Test
+    void testFindByIdHitsCache() {
+        User first = userDao.findById(1L);
+        long hits = userCache.getHits();
+
+        User second = userDao.findById(1L);
+        assertEquals(hits + 1, userCache.getHits());
+        assertEquals(first.getUserName(), second.getUserName());
+        assertEquals("admin", second.getRoles().get(0).getName());
+
+        // 命中返回的是副本，修改不影响缓存
+        second.setUserName("changed");
+        assertEquals("pdai", userDao.findById(1L).getUserName());
+    }
+
+    @Test
+    void testUpdateClearsCache() {
+        assertEquals("测试用户", userDao.findById(2L).getDescription());
+
+        User user = new User();
+        user.setId(2L);
+        user.setDescription("缓存失效");
+        userDao.update(user);
+        try {
+            assertEquals("缓存失效", userDao.findById(2L).getDescription());
+        } finally {
+            user.setDescription("测试用户");
+            userDao.update(user);
+        }
+    }
+
+    @Test
+    void testUserWriteClearsRoleCache() {
+        RoleQueryBean queryBean = new RoleQueryBean();
+        roleDao.findList(queryBean);
+        roleDao.findList(queryBean);
+        assertEquals(1, roleCache.getSize());
+
+        // UserMapper.xml的flushCaches包含角色namespace
+        User user = new User();
+        user.setId(2L);
+        user.setDescription("测试用户");
+        userDao.update(user);
+        assertEquals(0, roleCache.getSize());
+    }
+}
@@ -0,0 +1,128 @@
+package tech.pdai.springboot.mysql8.mybatis.xml.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.mybatis.xml.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.xml.entity.Role;
+import tech.pdai.springboot.mysql8.mybatis.xml.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.xml.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.mybatis.xml.service.IUserService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 流式导出集成测试 - 结果跨越多个fetch批次时，每个用户仍然带着完整的角色、只出现一次
+ *
+ * @author pdai
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+class UserStreamExportIntegrationTest {
+
+    private static final int USER_COUNT = 35;
+
+    private static final int FETCH_SIZE = 10;
+
+    private static final long FIRST_USER_ID = 1000;
+
+    private static final String DESCRIPTION = "流式导出";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * user id -> sorted role ids, in the order of the users.
+     */
+    private final Map<Long, List<Long>> expectedRoles = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        // 每个用户1~3个角色，一个用户的行会落在两个fetch批次之间
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> userRoles = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            long userId = FIRST_USER_ID + i;
+            users.add(new Object[]{userId, "stream" + i, "password", DESCRIPTION});
+            List<Long> roleIds = LongStream.rangeClosed(1, i % 3 + 1).boxed().collect(Collectors.toList());
+            roleIds.forEach(roleId -> userRoles.add(new Object[]{userId, roleId}));
+            expectedRoles.put(userId, roleIds);
+        }
+        jdbcTemplate.batchUpdate("insert into tb_user(id, user_name, password, description) values (?, ?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("insert into tb_user_role(user_id, role_id) values (?, ?)", userRoles);
+
+        assertEquals(FETCH_SIZE, sqlSessionFactory.getConfiguration()
+                .getMappedStatement(IUserDao.class.getName() + ".streamList").getFetchSize());
+        assertTrue(userRoles.size() > 2 * FETCH_SIZE, "rows should span several fetch batches");
+    }
+
+    @Test
+    void testStreamListGroupsRolesOfEachUser() {
+        UserQueryBean queryBean = new UserQueryBean();
+        queryBean.setDescription(DESCRIPTION);
+        Map<Long, List<Long>> streamed = new LinkedHashMap<>();
+
+        userService.streamList(queryBean, user -> assertNull(streamed.put(user.getId(), roleIds(user)),
+                "user " + user.getId() + " streamed twice"));
+
+        assertEquals(new ArrayList<>(expectedRoles.entrySet()), new ArrayList<>(streamed.entrySet()));
+    }
+
+    @Test
+    void testExportWritesEachUserOnceWithItsRoles() throws Exception {
+        String body = mockMvc.perform(get("/user/export").param("description", DESCRIPTION))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        Map<Long, List<Long>> exported = new LinkedHashMap<>();
+        for (String line : body.split("\n")) {
+            JsonNode user = objectMapper.readTree(line);
+            List<Long> roleIds = new ArrayList<>();
+            user.get("roles").forEach(role -> roleIds.add(role.get("id").asLong()));
+            roleIds.sort(null);
+            assertNull(exported.put(user.get("id").asLong(), roleIds), "user " + user.get("id") + " exported twice");
+        }
+
+        assertEquals(new ArrayList<>(expectedRoles.entrySet()), new ArrayList<>(exported.entrySet()));
+    }
+
+    private static List<Long> roleIds(User user) {
+        // 只按用户排序，用户内角色的顺序不固定
+        return user.getRoles().stream().map(Role::getId).sorted().collect(Collectors.toList());
+    }
+}
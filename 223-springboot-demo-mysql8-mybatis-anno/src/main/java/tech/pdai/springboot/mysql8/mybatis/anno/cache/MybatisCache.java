@@ -0,0 +1,152 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.cache;
+
+import lombok.Setter;
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.SerializationUtils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * second level cache of a mapper namespace, the implementation named in @CacheNamespace. entries are kept in the
+ * store, caffeine or redis, created by the bound MybatisCacheManager.
+ * values are stored serialized, so every hit is a copy that callers may change, as with the default read-write
+ * cache of mybatis. within a spring transaction entries are stored only after the commit, a rolled back
+ * transaction leaves nothing behind.
+ *
+ * @author pdai
+ */
+public class MybatisCache implements Cache, InitializingObject {
+
+    private final String id;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * namespaces, comma separated, cleared together with this one: their results read tables written by the
+     * statements of this namespace.
+     */
+    @Setter
+    private String flushCaches;
+
+    private MybatisCacheManager manager;
+
+    private Cache store;
+
+    /**
+     * init.
+     *
+     * @param id namespace
+     */
+    public MybatisCache(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public void initialize() {
+        manager = MybatisCacheManager.current();
+        store = manager.createStore(id);
+        manager.register(this);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        // mybatis puts null for the keys it looked up but did not load
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = SerializationUtils.serialize(value);
+        afterCommit(() -> store.putObject(key, bytes));
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        byte[] bytes = (byte[]) store.getObject(key);
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return SerializationUtils.deserialize(bytes);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        store.removeObject(key);
+        return null;
+    }
+
+    /**
+     * clears this and the dependent namespaces now and, within a transaction, once more after the commit: other
+     * sessions may have stored the old rows in between.
+     */
+    @Override
+    public void clear() {
+        clearWithDependents();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            afterCommit(this::clearWithDependents);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return store.getSize();
+    }
+
+    /**
+     * @return gets answered from the store
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return gets not answered from the store
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits of all gets, 0 before the first get
+     */
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * clear the store of this namespace only.
+     */
+    void clearStore() {
+        store.clear();
+    }
+
+    private void clearWithDependents() {
+        store.clear();
+        manager.clearStores(flushCaches);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.boot.autoconfigure.ConfigurationCustomizer;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * creates the stores of the MybatisCache of each namespace and keeps them per application context, exposes their
+ * hits and misses as meters.
+ * mybatis instantiates caches by class name, so the manager is bound while the mappers of its context are parsed:
+ * from customizing the mybatis configuration until all singletons, mapper beans included, are created.
+ *
+ * @author pdai
+ */
+public class MybatisCacheManager implements ConfigurationCustomizer, SmartInitializingSingleton, MeterBinder {
+
+    private static volatile MybatisCacheManager current;
+
+    private final Function<String, Cache> storeFactory;
+
+    private final Map<String, MybatisCache> caches = new ConcurrentHashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    /**
+     * init.
+     *
+     * @param storeFactory creates the store of a namespace
+     */
+    public MybatisCacheManager(Function<String, Cache> storeFactory) {
+        this.storeFactory = storeFactory;
+    }
+
+    /**
+     * @return manager of the caches being created
+     */
+    static MybatisCacheManager current() {
+        MybatisCacheManager manager = current;
+        if (manager == null) {
+            throw new IllegalStateException("no MybatisCacheManager is bound, mapper caches are created only while "
+                    + "the mybatis configuration of an application context with a MybatisCacheManager is built");
+        }
+        return manager;
+    }
+
+    @Override
+    public void customize(Configuration configuration) {
+        current = this;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    /**
+     * @param id namespace
+     * @return cache of the namespace, null if it has none
+     */
+    public MybatisCache getCache(String id) {
+        return caches.get(id);
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        caches.values().forEach(this::bindMeters);
+    }
+
+    Cache createStore(String id) {
+        return storeFactory.apply(id);
+    }
+
+    synchronized void register(MybatisCache cache) {
+        caches.put(cache.getId(), cache);
+        if (meterRegistry != null) {
+            bindMeters(cache);
+        }
+    }
+
+    /**
+     * @param namespaces namespaces, comma separated, may be null
+     */
+    void clearStores(String namespaces) {
+        for (String namespace : StringUtils.commaDelimitedListToSet(namespaces)) {
+            MybatisCache cache = caches.get(namespace.trim());
+            if (cache != null) {
+                cache.clearStore();
+            }
+        }
+    }
+
+    private void bindMeters(MybatisCache cache) {
+        FunctionCounter.builder("mybatis.cache.gets", cache, MybatisCache::getHits)
+                .tag("namespace", cache.getId())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("mybatis.cache.gets", cache, MybatisCache::getMisses)
+                .tag("namespace", cache.getId())
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("mybatis.cache.hit.ratio", cache, MybatisCache::getHitRatio)
+                .tag("namespace", cache.getId())
+                .register(meterRegistry);
+    }
+}
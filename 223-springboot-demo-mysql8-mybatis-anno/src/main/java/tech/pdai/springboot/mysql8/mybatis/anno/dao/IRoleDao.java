@@ -1,6 +1,7 @@
 package tech.pdai.springboot.mysql8.mybatis.anno.dao;
 
 import org.apache.ibatis.annotations.*;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCache;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.RoleQueryBean;
 
@@ -10,6 +11,8 @@ import java.util.List;
  * @author pdai
  */
 @Mapper
+@CacheNamespace(implementation = MybatisCache.class,
+        properties = @Property(name = "flushCaches", value = "tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao"))
 public interface IRoleDao {
 
     @Results(
@@ -28,6 +31,6 @@ public interface IRoleDao {
     List<Role> findList(RoleQueryBean roleQueryBean);
 
     @ResultMap("RoleResult")
-    @Select("select r.id, r.name, r.role_key, r.description, r.create_time, r.update_time from tb_role r, tb_user_role ur where r.id = ur.user_id and ur.user_id = #{userId}")
+    @Select("select r.id, r.name, r.role_key, r.description, r.create_time, r.update_time from tb_role r, tb_user_role ur where r.id = ur.role_id and ur.user_id = #{userId}")
     List<Role> findRoleByUserId(Long userId);
 }
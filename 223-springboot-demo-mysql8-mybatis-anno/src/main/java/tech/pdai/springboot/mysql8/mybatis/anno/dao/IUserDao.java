@@ -1,19 +1,33 @@
 package tech.pdai.springboot.mysql8.mybatis.anno.dao;
 
 import org.apache.ibatis.annotations.*;
-import org.apache.ibatis.mapping.FetchType;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCache;
 import tech.pdai.springboot.mysql8.mybatis.anno.dao.provider.UserDaoProvider;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.UserRole;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.UserQueryBean;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author pdai
  */
 @Mapper
+@CacheNamespace(implementation = MybatisCache.class,
+        properties = @Property(name = "flushCaches", value = "tech.pdai.springboot.mysql8.mybatis.anno.dao.IRoleDao"))
 public interface IUserDao {
 
+    /**
+     * max user ids in the in clause of findUserRoles.
+     */
+    int ROLE_BATCH_SIZE = 1000;
+
     String SELECT_USER_SQL = "select u.id, u.password, u.user_name, u.email, u.phone_number, u.description, u.create_time, u.update_time from tb_user u";
 
     @Results(
@@ -26,12 +40,42 @@ public interface IUserDao {
                     @Result(property = "phoneNumber", column = "phone_number"),
                     @Result(property = "description", column = "description"),
                     @Result(property = "createTime", column = "create_time"),
-                    @Result(property = "updateTime", column = "update_time"),
-                    @Result(property = "roles", column = "id", many = @Many(select = "tech.pdai.springboot.mysql8.mybatis.anno.dao.IRoleDao.findRoleByUserId", fetchType = FetchType.EAGER))
+                    @Result(property = "updateTime", column = "update_time")
             }
     )
     @Select({SELECT_USER_SQL, " where id = #{id}"})
-    User findById(@Param("id") Long id);
+    User selectById(@Param("id") Long id);
+
+    @Results(
+            id = "UserRoleResult",
+            value = {
+                    @Result(property = "userId", column = "user_id"),
+                    @Result(property = "role.id", column = "id"),
+                    @Result(property = "role.name", column = "name"),
+                    @Result(property = "role.roleKey", column = "role_key"),
+                    @Result(property = "role.description", column = "description"),
+                    @Result(property = "role.createTime", column = "create_time"),
+                    @Result(property = "role.updateTime", column = "update_time")
+            }
+    )
+    @Select({"<script> ", "select ur.user_id, r.id, r.name, r.role_key, r.description, r.create_time, r.update_time" +
+            " from tb_user_role ur join tb_role r on r.id = ur.role_id where ur.user_id in\n" +
+            "<foreach collection=\"userIds\" item=\"userId\" open=\"(\" separator=\",\" close=\")\">\n" +
+            "#{userId}\n" +
+            "</foreach>", " </script>"})
+    List<UserRole> findUserRoles(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * @param id id
+     * @return user with roles, null if not found
+     */
+    default User findById(Long id) {
+        User user = selectById(id);
+        if (user != null) {
+            fillRoles(Collections.singletonList(user));
+        }
+        return user;
+    }
 
     @ResultMap("UserResult")
     @Select(SELECT_USER_SQL)
@@ -40,7 +84,7 @@ public interface IUserDao {
     @ResultMap("UserResult")
     @Select({"<script> ", SELECT_USER_SQL, " where u.id != 0\n" +
             "\t\t<if test=\"userName != null and userName != ''\">\n" +
-            "AND u.user_name like concat('%', #{user_name}, '%')\n" +
+            "AND u.user_name like concat('%', #{userName}, '%')\n" +
             "\t\t</if>\n" +
             "\t\t<if test=\"description != null and description != ''\">\n" +
             "AND u.description like concat('%', #{description}, '%')\n" +
@@ -51,7 +95,34 @@ public interface IUserDao {
             "\t\t<if test=\"email != null and email != ''\">\n" +
             "AND u.email like concat('%', #{email}, '%')\n" +
             "\t\t</if>", " </script>"})
-    List<User> findList(UserQueryBean userQueryBean);
+    List<User> selectList(UserQueryBean userQueryBean);
+
+    /**
+     * @param userQueryBean query
+     * @return users with roles, the roles of the whole list are loaded by one query
+     */
+    default List<User> findList(UserQueryBean userQueryBean) {
+        List<User> users = selectList(userQueryBean);
+        fillRoles(users);
+        return users;
+    }
+
+    /**
+     * load the roles of users by one in query per ROLE_BATCH_SIZE users instead of one query per user, and set
+     * them on the users.
+     *
+     * @param users users
+     */
+    default void fillRoles(List<User> users) {
+        Map<Long, List<Role>> rolesByUser = new HashMap<>(users.size() * 2);
+        users.forEach(user -> rolesByUser.put(user.getId(), new ArrayList<>()));
+        List<Long> userIds = new ArrayList<>(rolesByUser.keySet());
+        for (int from = 0; from < userIds.size(); from += ROLE_BATCH_SIZE) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + ROLE_BATCH_SIZE, userIds.size()));
+            findUserRoles(chunk).forEach(userRole -> rolesByUser.get(userRole.getUserId()).add(userRole.getRole()));
+        }
+        users.forEach(user -> user.setRoles(rolesByUser.get(user.getId())));
+    }
 
     @Delete("delete from tb_user where id = #{id}")
     int deleteById(Long id);
@@ -93,12 +164,39 @@ public interface IUserDao {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int save(User user);
 
+    /**
+     * insert of all columns. unlike save, the sql text is the same for every user, so a batch executor sends
+     * consecutive calls as one jdbc batch.
+     *
+     * @param user user
+     * @return inserted rows
+     */
+    @Insert({"insert into tb_user(user_name, password, email, phone_number, description, create_time, update_time)",
+            " values(#{userName}, #{password}, #{email}, #{phoneNumber}, #{description}, sysdate(), sysdate())"})
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(User user);
+
+    @Insert("insert into tb_user_role(user_id, role_id) values(#{userId}, #{roleId})")
+    int saveUserRole(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
     @Update({"update tb_user set password = #{password}, update_time = sysdate()", " where id = #{id}"})
     int updatePassword(User user);
 
     @ResultMap("UserResult")
     @SelectProvider(type = UserDaoProvider.class, method = "findById")
-    User findById2(Long id);
+    User selectById2(Long id);
+
+    /**
+     * @param id id
+     * @return user with roles, null if not found
+     */
+    default User findById2(Long id) {
+        User user = selectById2(id);
+        if (user != null) {
+            fillRoles(Collections.singletonList(user));
+        }
+        return user;
+    }
 
 
 }
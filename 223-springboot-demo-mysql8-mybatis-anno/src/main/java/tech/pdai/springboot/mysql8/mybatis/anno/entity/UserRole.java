@@ -0,0 +1,25 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * row of tb_user_role joined with its role.
+ *
+ * @author pdai
+ */
+@Getter
+@Setter
+public class UserRole implements BaseEntity {
+
+    /**
+     * user id.
+     */
+    private Long userId;
+
+    /**
+     * role.
+     */
+    private Role role;
+
+}
@@ -0,0 +1,84 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * hit ratios of the two prepared statement caches, as gauges.
+ * mybatis.statement.reuse.ratio: executions that reused a statement kept by the REUSE executor, which keeps them
+ * for one sql session, that is one transaction.
+ * jdbc.prepared.statement.cache.hit.ratio: server side executions that needed no COM_STMT_PREPARE, mysql only and
+ * needs useServerPrepStmts and cachePrepStmts in the url. the driver keeps the statements of each pooled
+ * connection across transactions. the counters are the server's since its start, other clients included.
+ *
+ * @author pdai
+ */
+@Slf4j
+public class StatementCacheMetrics implements MeterBinder {
+
+    private static final String STATUS_SQL =
+            "show global status where variable_name in ('Com_stmt_prepare', 'Com_stmt_execute')";
+
+    private final StatementMetricsInterceptor interceptor;
+
+    private final DataSource dataSource;
+
+    /**
+     * init.
+     *
+     * @param interceptor interceptor counting the prepares of the executors
+     * @param dataSource  data source
+     */
+    public StatementCacheMetrics(StatementMetricsInterceptor interceptor, DataSource dataSource) {
+        this.interceptor = interceptor;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mybatis.statement.reuse.ratio", interceptor, StatementMetricsInterceptor::getStatementReuseRatio)
+                .description("executions that reused a statement of the executor")
+                .register(registry);
+        if (isMysql()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            Gauge.builder("jdbc.prepared.statement.cache.hit.ratio", jdbcTemplate, StatementCacheMetrics::serverCacheHitRatio)
+                    .description("server side executions that reused a statement prepared before")
+                    .register(registry);
+        }
+    }
+
+    private boolean isMysql() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "MySQL".equalsIgnoreCase(product);
+        } catch (MetaDataAccessException e) {
+            log.warn("database not available, jdbc.prepared.statement.cache.hit.ratio is not registered", e);
+            return false;
+        }
+    }
+
+    private static double serverCacheHitRatio(JdbcTemplate jdbcTemplate) {
+        try {
+            Map<String, Long> status = new HashMap<>();
+            jdbcTemplate.query(STATUS_SQL, rs -> {
+                status.put(rs.getString(1).toLowerCase(), rs.getLong(2));
+            });
+            long executes = status.getOrDefault("com_stmt_execute", 0L);
+            long prepares = status.getOrDefault("com_stmt_prepare", 0L);
+            return StatementStats.reuseRatio(executes, prepares);
+        } catch (DataAccessException e) {
+            return Double.NaN;
+        }
+    }
+}
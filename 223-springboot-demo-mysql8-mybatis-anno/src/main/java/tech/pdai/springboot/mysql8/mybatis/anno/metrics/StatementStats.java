@@ -0,0 +1,199 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.metrics;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters of one mapped statement.
+ * calls are the mapper calls, timed from the executor and so including second level cache hits and result mapping;
+ * executions are the jdbc statements the calls ran. statements of a batch executor are sent when the batch is
+ * flushed and counted as batches instead. prepares are the statements the executor prepared for them, the others
+ * reused a statement it kept, as the REUSE and BATCH executors do for the same sql.
+ *
+ * @author pdai
+ */
+public class StatementStats {
+
+    private final String id;
+
+    private final LatencyHistogram calls = new LatencyHistogram();
+
+    private final LatencyHistogram executions = new LatencyHistogram();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder updatedRows = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder batchedStatements = new LongAdder();
+
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder prepares = new LongAdder();
+
+    /**
+     * ring buffer of the latest slow calls, guarded by this.
+     */
+    private final SlowStatement[] slowStatements;
+
+    private long slowCount;
+
+    /**
+     * init.
+     *
+     * @param id          id of the mapped statement
+     * @param slowSamples slow calls kept
+     */
+    public StatementStats(String id, int slowSamples) {
+        this.id = id;
+        this.slowStatements = new SlowStatement[slowSamples];
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    void recordCall(long nanos, boolean failed) {
+        calls.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void recordExecution(long nanos) {
+        executions.record(nanos);
+    }
+
+    void recordPrepare() {
+        prepares.increment();
+    }
+
+    void recordRows(int count) {
+        rows.add(count);
+    }
+
+    void recordUpdatedRows(int count) {
+        updatedRows.add(count);
+    }
+
+    /**
+     * @param updateCounts update counts of the flushed batch, one per statement
+     */
+    void recordBatch(int[] updateCounts) {
+        batches.increment();
+        batchedStatements.add(updateCounts.length);
+        maxBatchSize.accumulateAndGet(updateCounts.length, Math::max);
+        for (int updateCount : updateCounts) {
+            // the driver may report Statement.SUCCESS_NO_INFO instead of a count
+            if (updateCount > 0) {
+                updatedRows.add(updateCount);
+            }
+        }
+    }
+
+    /**
+     * @return statements prepared by the executor
+     */
+    public long getPrepares() {
+        return prepares.sum();
+    }
+
+    /**
+     * @return statements executed or added to a flushed batch, each needs a prepared statement
+     */
+    public long getStatementUses() {
+        return executions.getCount() + batchedStatements.sum();
+    }
+
+    synchronized void recordSlow(SlowStatement slowStatement) {
+        if (slowStatements.length > 0) {
+            slowStatements[(int) (slowCount % slowStatements.length)] = slowStatement;
+        }
+        slowCount++;
+    }
+
+    /**
+     * @return counters at the time of the call
+     */
+    public Snapshot snapshot() {
+        List<SlowStatement> slow = new ArrayList<>();
+        long slowTotal;
+        synchronized (this) {
+            slowTotal = slowCount;
+            int kept = (int) Math.min(slowCount, slowStatements.length);
+            // newest first
+            for (int i = 1; i <= kept; i++) {
+                slow.add(slowStatements[(int) ((slowCount - i) % slowStatements.length)]);
+            }
+        }
+        return new Snapshot(id, calls.snapshot(), executions.snapshot(), rows.sum(), updatedRows.sum(),
+                batches.sum(), batchedStatements.sum(), maxBatchSize.get(), errors.sum(), getPrepares(),
+                reuseRatio(getStatementUses(), getPrepares()), slowTotal, slow);
+    }
+
+    /**
+     * @param uses     statements executed
+     * @param prepares statements prepared for them
+     * @return share of the executions that reused a prepared statement
+     */
+    static double reuseRatio(long uses, long prepares) {
+        // statements added to a batch that is not flushed yet were prepared but not counted as used
+        return uses == 0 ? 0 : Math.max(0, uses - prepares) / (double) uses;
+    }
+
+    /**
+     * counters of a statement.
+     */
+    @Value
+    public static class Snapshot {
+
+        String id;
+
+        LatencyHistogram.Snapshot calls;
+
+        LatencyHistogram.Snapshot executions;
+
+        long rows;
+
+        long updatedRows;
+
+        long batches;
+
+        long batchedStatements;
+
+        long maxBatchSize;
+
+        long errors;
+
+        long prepares;
+
+        double statementReuseRatio;
+
+        long slowCount;
+
+        List<SlowStatement> slowStatements;
+    }
+
+    /**
+     * a call slower than the threshold, with its sql and the values bound to it.
+     */
+    @Value
+    public static class SlowStatement {
+
+        Instant time;
+
+        double elapsedMs;
+
+        String sql;
+
+        List<String> parameters;
+    }
+}
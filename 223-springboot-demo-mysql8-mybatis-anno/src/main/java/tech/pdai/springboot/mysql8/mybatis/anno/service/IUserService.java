@@ -23,6 +23,14 @@ public interface IUserService {
 
     int save(User user);
 
+    /**
+     * save users and their role associations in jdbc batches, ids are set on the users.
+     *
+     * @param users users
+     * @return saved users
+     */
+    int saveBatch(List<User> users);
+
     int updatePassword(User user);
 
     User findById2(Long userId);
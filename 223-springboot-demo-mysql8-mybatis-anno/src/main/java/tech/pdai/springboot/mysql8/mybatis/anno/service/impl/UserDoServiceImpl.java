@@ -1,7 +1,14 @@
 package tech.pdai.springboot.mysql8.mybatis.anno.service.impl;
 
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
 import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.UserQueryBean;
 import tech.pdai.springboot.mysql8.mybatis.anno.service.IUserService;
@@ -16,6 +23,18 @@ public class UserDoServiceImpl implements IUserService {
      */
     private final IUserDao userDao;
 
+    /**
+     * opens the batch sessions of saveBatch.
+     */
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * rows sent per jdbc batch by saveBatch.
+     */
+    @Value("${mybatis.batch.flush-size:500}")
+    private int batchFlushSize;
+
     /**
      * init.
      *
@@ -55,6 +74,39 @@ public class UserDoServiceImpl implements IUserService {
         return userDao.save(user);
     }
 
+    /**
+     * one batch session for the whole call, on the connection of the current transaction. each chunk of users is
+     * flushed before its role rows are added, the flush back-fills the generated ids the role rows refer to.
+     *
+     * @param users users
+     * @return saved users
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int saveBatch(List<User> users) {
+        if (batchFlushSize <= 0) {
+            throw new IllegalStateException("mybatis.batch.flush-size must be positive");
+        }
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            IUserDao batchDao = session.getMapper(IUserDao.class);
+            for (int from = 0; from < users.size(); from += batchFlushSize) {
+                List<User> chunk = users.subList(from, Math.min(from + batchFlushSize, users.size()));
+                chunk.forEach(batchDao::insert);
+                session.flushStatements();
+                for (User user : chunk) {
+                    if (user.getRoles() != null) {
+                        for (Role role : user.getRoles()) {
+                            batchDao.saveUserRole(user.getId(), role.getId());
+                        }
+                    }
+                }
+                session.flushStatements();
+            }
+            session.commit();
+        }
+        return users.size();
+    }
+
     @Override
     public int updatePassword(User user) {
         return userDao.updatePassword(user);
@@ -0,0 +1,160 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCache;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IRoleDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.UserQueryBean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二级缓存集成测试（caffeine） - 验证命中、写入后的失效、跨用户/角色namespace的失效、回滚不写入缓存以及命中率指标
+ * <p>
+ * 不开启测试事务，mapper调用各自提交，结果才会进入缓存
+ *
+ * @author pdai
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MybatisCacheIntegrationTest {
+
+    private static final String USER_NAMESPACE = IUserDao.class.getName();
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IRoleDao roleDao;
+
+    @Autowired
+    private MybatisCacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private MybatisCache userCache;
+
+    private MybatisCache roleCache;
+
+    @BeforeEach
+    void setUp() {
+        userCache = cacheManager.getCache(USER_NAMESPACE);
+        roleCache = cacheManager.getCache(IRoleDao.class.getName());
+        userCache.clear();
+        roleCache.clear();
+    }
+
+    @Test
+    void testFindByIdHitsCache() {
+        User first = userDao.findById(1L);
+        long hits = userCache.getHits();
+
+        // selectById和findUserRoles都命中
+        User second = userDao.findById(1L);
+        assertEquals(hits + 2, userCache.getHits());
+        assertEquals(first.getUserName(), second.getUserName());
+        assertEquals("admin", second.getRoles().get(0).getName());
+
+        // 命中返回的是副本，修改不影响缓存
+        second.setUserName("changed");
+        assertEquals("pdai", userDao.findById(1L).getUserName());
+    }
+
+    @Test
+    void testUpdateClearsCache() {
+        assertEquals("测试用户", userDao.findById(2L).getDescription());
+
+        User user = new User();
+        user.setId(2L);
+        user.setDescription("缓存失效");
+        userDao.update(user);
+        try {
+            assertEquals("缓存失效", userDao.findById(2L).getDescription());
+        } finally {
+            user.setDescription("测试用户");
+            userDao.update(user);
+        }
+    }
+
+    @Test
+    void testDeleteClearsCache() {
+        User user = new User();
+        user.setUserName("cachedelete");
+        user.setPassword("password");
+        userDao.save(user);
+        User other = new User();
+        other.setUserName("cachedeletes");
+        other.setPassword("password");
+        userDao.save(other);
+        assertNotNull(userDao.findById(user.getId()));
+        assertNotNull(userDao.findById(other.getId()));
+
+        userDao.deleteById(user.getId());
+        assertNull(userDao.findById(user.getId()));
+
+        userDao.deleteByIds(new Long[]{other.getId()});
+        assertNull(userDao.findById(other.getId()));
+    }
+
+    @Test
+    void testUserWriteClearsRoleCache() {
+        // findRoleByUserId缓存在角色namespace，用户namespace写入tb_user_role后也要失效
+        assertEquals(1, roleDao.findRoleByUserId(2L).size());
+        assertEquals(1, userDao.findById(2L).getRoles().size());
+
+        userDao.saveUserRole(2L, 1L);
+        try {
+            assertEquals(2, roleDao.findRoleByUserId(2L).size());
+            assertEquals(2, userDao.findById(2L).getRoles().size());
+        } finally {
+            jdbcTemplate.update("delete from tb_user_role where user_id = 2 and role_id = 1");
+            // 同时清除角色namespace
+            userCache.clear();
+        }
+    }
+
+    @Test
+    void testRolledBackReadIsNotCached() {
+        // 事务内读到未提交的数据，回滚后不能留在缓存中
+        UserQueryBean queryBean = new UserQueryBean();
+        queryBean.setDescription("回滚不缓存");
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update("insert into tb_user(user_name, password, description) values('rollback', 'password', '回滚不缓存')");
+            assertEquals(1, userDao.findList(queryBean).size());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertTrue(userDao.findList(queryBean).isEmpty());
+    }
+
+    @Test
+    void testHitRatioMetrics() {
+        userDao.findById(1L);
+        userDao.findById(1L);
+
+        assertTrue(userCache.getHitRatio() > 0);
+        assertEquals(userCache.getHitRatio(), meterRegistry.get("mybatis.cache.hit.ratio")
+                .tag("namespace", USER_NAMESPACE).gauge().value(), 1e-9);
+        assertEquals(userCache.getHits(), meterRegistry.get("mybatis.cache.gets").tag("namespace", USER_NAMESPACE)
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(userCache.getMisses(), meterRegistry.get("mybatis.cache.gets").tag("namespace", USER_NAMESPACE)
+                .tag("result", "miss").functionCounter().count());
+    }
+}
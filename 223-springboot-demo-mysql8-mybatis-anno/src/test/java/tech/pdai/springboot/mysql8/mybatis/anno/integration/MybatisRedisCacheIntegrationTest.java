@@ -0,0 +1,110 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.context.ActiveProfiles;
+import redis.embedded.RedisServer;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCache;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.RedisCache;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二级缓存集成测试（redis） - 验证结果存入redis、其它节点可见以及写入后的失效
+ *
+ * @author pdai
+ */
+@SpringBootTest(properties = {"mybatis.cache.type=redis", "spring.redis.port=6380"})
+@ActiveProfiles("test")
+class MybatisRedisCacheIntegrationTest {
+
+    private static final String USER_NAMESPACE = IUserDao.class.getName();
+
+    private static final String USER_KEY = "mybatis:cache:" + USER_NAMESPACE;
+
+    private static RedisServer redisServer;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private MybatisCacheManager cacheManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    private MybatisCache userCache;
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(6380);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        userCache = cacheManager.getCache(USER_NAMESPACE);
+        userCache.clear();
+    }
+
+    @Test
+    void testResultsAreSharedThroughRedis() {
+        userDao.findById(1L);
+        long hits = userCache.getHits();
+
+        User user = userDao.findById(1L);
+        assertEquals(hits + 2, userCache.getHits());
+        assertEquals("pdai", user.getUserName());
+        assertEquals("admin", user.getRoles().get(0).getName());
+
+        // 模拟另一个节点：同一namespace的store读到同样的条目
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        RedisCache otherNode = new RedisCache(USER_NAMESPACE, template, "mybatis:cache:", Duration.ofMinutes(10));
+        assertEquals(2, otherNode.getSize());
+    }
+
+    @Test
+    void testUpdateDeletesNamespace() {
+        userDao.findById(2L);
+        assertTrue(stringRedisTemplate.hasKey(USER_KEY));
+        assertTrue(stringRedisTemplate.getExpire(USER_KEY) > 0);
+
+        User user = new User();
+        user.setId(2L);
+        user.setDescription("缓存失效");
+        userDao.update(user);
+        try {
+            assertFalse(stringRedisTemplate.hasKey(USER_KEY));
+            assertEquals("缓存失效", userDao.findById(2L).getDescription());
+        } finally {
+            user.setDescription("测试用户");
+            userDao.update(user);
+        }
+    }
+}
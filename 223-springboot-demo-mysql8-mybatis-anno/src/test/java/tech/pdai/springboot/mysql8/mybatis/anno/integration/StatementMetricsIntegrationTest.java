@@ -0,0 +1,171 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementMetricsInterceptor;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementStats;
+import tech.pdai.springboot.mysql8.mybatis.anno.service.IUserService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 语句统计集成测试 - 验证调用次数、JDBC执行次数、返回行数、更新行数、批大小、慢语句参数以及actuator端点
+ * <p>
+ * 慢语句阈值设为0，每次调用都会被采样
+ *
+ * @author pdai
+ */
+@SpringBootTest(properties = {"mybatis.metrics.slow-threshold=0ms", "mybatis.metrics.slow-samples=3",
+        "mybatis.batch.flush-size=300"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StatementMetricsIntegrationTest {
+
+    private static final String NAMESPACE = IUserDao.class.getName();
+
+    @Autowired
+    private StatementMetricsInterceptor interceptor;
+
+    @Autowired
+    private MybatisCacheManager cacheManager;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(NAMESPACE).clear();
+        interceptor.reset();
+    }
+
+    @Test
+    void testQueryRecordsCallsExecutionsAndRows() {
+        List<User> users = userDao.findList(new UserQueryBean());
+
+        StatementStats.Snapshot selectList = snapshot("selectList");
+        assertEquals(1, selectList.getCalls().getCount());
+        assertEquals(1, selectList.getExecutions().getCount());
+        assertEquals(users.size(), selectList.getRows());
+        assertEquals(0, selectList.getErrors());
+        assertTrue(selectList.getCalls().getMaxMs() >= selectList.getExecutions().getMaxMs());
+        // 角色由一条IN查询加载
+        assertEquals(1, snapshot("findUserRoles").getCalls().getCount());
+    }
+
+    @Test
+    void testCacheHitIsCallWithoutExecution() {
+        userDao.selectById(1L);
+        userDao.selectById(1L);
+
+        StatementStats.Snapshot selectById = snapshot("selectById");
+        assertEquals(2, selectById.getCalls().getCount());
+        assertEquals(1, selectById.getExecutions().getCount());
+        assertEquals(2, selectById.getRows());
+    }
+
+    @Test
+    @Transactional
+    void testUpdateRecordsUpdatedRows() {
+        User user = new User();
+        user.setId(2L);
+        user.setDescription("统计更新行数");
+        userDao.update(user);
+
+        StatementStats.Snapshot update = snapshot("update");
+        assertEquals(1, update.getCalls().getCount());
+        assertEquals(1, update.getExecutions().getCount());
+        assertEquals(1, update.getUpdatedRows());
+    }
+
+    @Test
+    @Transactional
+    void testSaveBatchRecordsBatchSizes() {
+        // flush-size为300，700个用户分3批：300、300、100
+        List<User> users = new ArrayList<>();
+        Role role = new Role();
+        role.setId(2L);
+        for (int i = 0; i < 700; i++) {
+            User user = new User();
+            user.setUserName("metricsbatch" + i);
+            user.setPassword("password");
+            user.setRoles(Collections.singletonList(role));
+            users.add(user);
+        }
+        userService.saveBatch(users);
+
+        StatementStats.Snapshot insert = snapshot("insert");
+        assertEquals(700, insert.getCalls().getCount());
+        assertEquals(3, insert.getBatches());
+        assertEquals(700, insert.getBatchedStatements());
+        assertEquals(300, insert.getMaxBatchSize());
+        assertEquals(700, insert.getUpdatedRows());
+        assertEquals(3, snapshot("saveUserRole").getBatches());
+    }
+
+    @Test
+    void testSlowStatementKeepsBoundParameters() {
+        for (long id = 1; id <= 4; id++) {
+            userDao.selectById(id);
+        }
+
+        StatementStats.Snapshot selectById = snapshot("selectById");
+        assertEquals(4, selectById.getSlowCount());
+        // 只保留最近3条，最新的在前
+        assertEquals(3, selectById.getSlowStatements().size());
+        StatementStats.SlowStatement latest = selectById.getSlowStatements().get(0);
+        assertEquals(Collections.singletonList("4"), latest.getParameters());
+        assertTrue(latest.getSql().endsWith("where id = ?"));
+        assertEquals(Collections.singletonList("2"), selectById.getSlowStatements().get(2).getParameters());
+    }
+
+    @Test
+    void testEndpoint() throws Exception {
+        userDao.selectById(1L);
+        String id = NAMESPACE + ".selectById";
+
+        mockMvc.perform(get("/actuator/mybatis"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", hasItem(id)));
+        mockMvc.perform(get("/actuator/mybatis/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.calls.count").value(1))
+                .andExpect(jsonPath("$.slowStatements[0].parameters[0]").value("1"));
+        mockMvc.perform(get("/actuator/mybatis/" + NAMESPACE + ".notCalled"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/actuator/mybatis"))
+                .andExpect(status().isNoContent());
+        assertNull(interceptor.getStatement(id));
+    }
+
+    private StatementStats.Snapshot snapshot(String method) {
+        StatementStats stats = interceptor.getStatement(NAMESPACE + "." + method);
+        assertNotNull(stats, method + " not recorded");
+        return stats.snapshot();
+    }
+}
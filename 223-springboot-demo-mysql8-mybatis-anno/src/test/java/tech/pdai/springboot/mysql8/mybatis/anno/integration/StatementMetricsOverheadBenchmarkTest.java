@@ -0,0 +1,131 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementMetricsInterceptor;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementStats;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 语句统计开销测试 - 用桩Executor/StatementHandler去掉数据库耗时，对比空插件与统计插件每条语句的耗时差
+ * <p>
+ * 两者都经过mybatis的Plugin代理，差值即统计本身的开销：两次计时、查找语句、thread local以及直方图记录
+ * <p>
+ * 耗时只输出到日志，不做断言，共享机器上的抖动会让阈值断言时好时坏；这不是JMH基准，打了benchmark标签，
+ * 默认构建不运行: mvn test -Pbenchmark
+ *
+ * @author pdai
+ */
+@Slf4j
+class StatementMetricsOverheadBenchmarkTest {
+
+    private static final int ROUNDS = 5;
+
+    private static final int CALLS = 1_000_000;
+
+    private static final List<Object> ROWS = Collections.singletonList(new Object());
+
+    @Test
+    @Tag("benchmark")
+    void testOverheadPerStatement() throws SQLException {
+        Configuration configuration = new Configuration();
+        MappedStatement ms = new MappedStatement.Builder(configuration, "bench.selectById",
+                new StaticSqlSource(configuration, "select * from tb_user where id = ?"), SqlCommandType.SELECT).build();
+        StatementMetricsInterceptor metrics = new StatementMetricsInterceptor(Long.MAX_VALUE, 10);
+        Executor noopExecutor = executor(new NoopInterceptor());
+        Executor metricsExecutor = executor(metrics);
+
+        double noopNanos = Double.MAX_VALUE;
+        double metricsNanos = Double.MAX_VALUE;
+        long rows = 0;
+        // 第一轮为预热，取各轮最小值
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            rows += run(noopExecutor, ms);
+            double noop = (System.nanoTime() - start) / (double) CALLS;
+            start = System.nanoTime();
+            rows += run(metricsExecutor, ms);
+            double recorded = (System.nanoTime() - start) / (double) CALLS;
+            if (round > 0) {
+                noopNanos = Math.min(noopNanos, noop);
+                metricsNanos = Math.min(metricsNanos, recorded);
+            }
+        }
+        double overhead = metricsNanos - noopNanos;
+
+        log.info("per statement: noop plugin {} ns, metrics plugin {} ns, overhead {} ns",
+                String.format("%.1f", noopNanos), String.format("%.1f", metricsNanos), String.format("%.1f", overhead));
+        assertEquals(2L * (ROUNDS + 1) * CALLS, rows);
+        StatementStats.Snapshot snapshot = metrics.getStatement("bench.selectById").snapshot();
+        assertEquals((ROUNDS + 1L) * CALLS, snapshot.getCalls().getCount());
+        assertEquals((ROUNDS + 1L) * CALLS, snapshot.getExecutions().getCount());
+        assertEquals((ROUNDS + 1L) * CALLS, snapshot.getRows());
+    }
+
+    private static long run(Executor executor, MappedStatement ms) throws SQLException {
+        long rows = 0;
+        for (int i = 0; i < CALLS; i++) {
+            rows += executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size();
+        }
+        return rows;
+    }
+
+    /**
+     * executor stub whose query runs a statement handler stub, both wrapped by the interceptor as mybatis does.
+     */
+    private static Executor executor(Interceptor interceptor) {
+        StatementHandler handler = (StatementHandler) interceptor.plugin(Proxy.newProxyInstance(
+                StatementHandler.class.getClassLoader(), new Class<?>[]{StatementHandler.class},
+                (proxy, method, args) -> ROWS));
+        Executor executor = (Executor) Proxy.newProxyInstance(Executor.class.getClassLoader(),
+                new Class<?>[]{Executor.class}, (proxy, method, args) -> handler.query(null, null));
+        return (Executor) interceptor.plugin(executor);
+    }
+
+    /**
+     * 只转发调用的插件
+     */
+    @Intercepts({
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+            @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class})
+    })
+    static class NoopInterceptor implements Interceptor {
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+    }
+}
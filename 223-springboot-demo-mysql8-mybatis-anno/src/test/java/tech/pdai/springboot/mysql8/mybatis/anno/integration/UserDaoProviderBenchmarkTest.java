@@ -0,0 +1,184 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.annotations.CacheNamespaceRef;
+import org.apache.ibatis.annotations.SelectProvider;
+import org.apache.ibatis.jdbc.SQL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import tech.pdai.springboot.mysql8.mybatis.anno.cache.MybatisCacheManager;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementMetricsInterceptor;
+import tech.pdai.springboot.mysql8.mybatis.anno.metrics.StatementStats;
+import tech.pdai.springboot.mysql8.mybatis.anno.service.IUserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * provider参数化SQL测试 - 对比拼接id的旧写法与#{id}绑定的写法：语句预处理次数、REUSE执行器复用率以及吞吐量
+ * <p>
+ * 每轮在一个事务（一个SqlSession）中按不同的id各查一次，拼接写法每个id都是新的SQL，REUSE执行器无法复用
+ * <p>
+ * 预处理次数的验证默认运行；吞吐量只输出到日志，不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ *
+ * @author pdai
+ */
+@Slf4j
+@SpringBootTest(properties = "logging.level.tech.pdai.springboot.mysql8.mybatis.anno.dao=INFO")
+@ActiveProfiles("test")
+class UserDaoProviderBenchmarkTest {
+
+    private static final int USERS = 2000;
+
+    private static final int ROUNDS = 5;
+
+    private static final String PARAMETERIZED = IUserDao.class.getName() + ".selectById2";
+
+    private static final String CONCATENATED = ConcatenatedUserDao.class.getName() + ".selectById";
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MybatisCacheManager cacheManager;
+
+    @Autowired
+    private StatementMetricsInterceptor interceptor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ConcatenatedUserDao concatenatedUserDao;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        org.apache.ibatis.session.Configuration configuration = sqlSessionTemplate.getConfiguration();
+        if (!configuration.hasMapper(ConcatenatedUserDao.class)) {
+            configuration.addMapper(ConcatenatedUserDao.class);
+        }
+        concatenatedUserDao = sqlSessionTemplate.getMapper(ConcatenatedUserDao.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserName("provider" + i);
+            user.setPassword("password");
+            users.add(user);
+        }
+        userService.saveBatch(users);
+        ids = jdbcTemplate.queryForList("select id from tb_user where user_name like 'provider%' order by id", Long.class);
+        interceptor.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from tb_user where user_name like 'provider%'");
+        cacheManager.getCache(IUserDao.class.getName()).clear();
+    }
+
+    @Test
+    void testParameterizedSqlIsPreparedOncePerSession() {
+        List<String> concatenated = round(concatenatedUserDao::selectById);
+        List<String> parameterized = round(userDao::selectById2);
+
+        assertEquals(concatenated, parameterized);
+        assertEquals("provider0", parameterized.get(0));
+        // 拼接写法每个id预处理一次，参数化写法整轮只预处理一次
+        StatementStats.Snapshot concatenatedStats = interceptor.getStatement(CONCATENATED).snapshot();
+        StatementStats.Snapshot parameterizedStats = interceptor.getStatement(PARAMETERIZED).snapshot();
+        assertEquals(USERS, concatenatedStats.getPrepares());
+        assertEquals(0, concatenatedStats.getStatementReuseRatio());
+        assertEquals(1, parameterizedStats.getPrepares());
+        assertEquals((USERS - 1) / (double) USERS, parameterizedStats.getStatementReuseRatio(), 1e-9);
+        assertEquals(interceptor.getStatementReuseRatio(), meterRegistry.get("mybatis.statement.reuse.ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testThroughputOfParameterizedSql() {
+        // 预热
+        round(concatenatedUserDao::selectById);
+        round(userDao::selectById2);
+
+        long concatenatedNanos = Long.MAX_VALUE;
+        long parameterizedNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round(concatenatedUserDao::selectById);
+            concatenatedNanos = Math.min(concatenatedNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            round(userDao::selectById2);
+            parameterizedNanos = Math.min(parameterizedNanos, System.nanoTime() - start);
+        }
+
+        log.info("find {} users by id in one session: concatenated {} ops/s, parameterized {} ops/s, speedup {}, reuse ratio {}",
+                USERS, USERS * 1_000_000_000L / concatenatedNanos, USERS * 1_000_000_000L / parameterizedNanos,
+                String.format("%.2f", concatenatedNanos / (double) parameterizedNanos),
+                String.format("%.4f", interceptor.getStatement(PARAMETERIZED).snapshot().getStatementReuseRatio()));
+        assertEquals((ROUNDS + 1L) * USERS, interceptor.getStatement(PARAMETERIZED).getStatementUses());
+        assertEquals(ROUNDS + 1L, interceptor.getStatement(PARAMETERIZED).getPrepares());
+    }
+
+    /**
+     * one transaction, so one sql session and one REUSE executor, finding every user once.
+     */
+    private List<String> round(Function<Long, User> finder) {
+        cacheManager.getCache(IUserDao.class.getName()).clear();
+        return transactionTemplate.execute(status -> {
+            List<String> userNames = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                userNames.add(finder.apply(id).getUserName());
+            }
+            return userNames;
+        });
+    }
+
+    /**
+     * 旧写法：id拼接进SQL，与IUserDao共用二级缓存
+     */
+    @CacheNamespaceRef(IUserDao.class)
+    interface ConcatenatedUserDao {
+
+        @SelectProvider(type = ConcatenatedUserDaoProvider.class, method = "findById")
+        User selectById(Long id);
+    }
+
+    public static class ConcatenatedUserDaoProvider {
+
+        public String findById(final Long id) {
+            SQL sql = new SQL();
+            sql.SELECT("u.id, u.password, u.user_name, u.email, u.phone_number, u.description, u.create_time, u.update_time");
+            sql.FROM("tb_user u");
+            sql.WHERE("id = " + id);
+            return sql.toString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import com.github.pagehelper.PageHelper;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.query.UserQueryBean;
+import tech.pdai.springboot.mysql8.mybatis.anno.service.IUserService;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 角色批量加载集成测试 - 一页用户的角色由一次IN查询加载，不再每个用户一次查询
+ *
+ * @author pdai
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class UserRoleBatchLoadingIntegrationTest {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @BeforeEach
+    void setUp() {
+        // 多于一页，其中一部分用户没有角色
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE + 20; i++) {
+            User user = new User();
+            user.setUserName("rolebatch" + i);
+            user.setPassword("password");
+            user.setDescription("批量加载角色");
+            user.setRoles(i % 10 == 0 ? Collections.emptyList() : Arrays.asList(role(1L), role(2L)));
+            users.add(user);
+        }
+        userService.saveBatch(users);
+    }
+
+    @Test
+    void testPageOfUsersLoadsRolesInOneQuery() {
+        UserQueryBean queryBean = new UserQueryBean();
+        queryBean.setDescription("批量加载角色");
+        statementCounter.reset();
+
+        PageHelper.startPage(1, PAGE_SIZE, false);
+        List<User> users = userService.findList(queryBean);
+
+        // 一条分页查询 + 一条角色IN查询
+        assertEquals(2, statementCounter.get());
+        assertEquals(PAGE_SIZE, users.size());
+        for (User user : users) {
+            int index = Integer.parseInt(user.getUserName().substring("rolebatch".length()));
+            assertEquals(index % 10 == 0 ? 0 : 2, user.getRoles().size());
+        }
+    }
+
+    @Test
+    void testFindByIdLoadsRoles() {
+        statementCounter.reset();
+
+        User user = userDao.findById(1L);
+
+        assertEquals(2, statementCounter.get());
+        assertEquals(1, user.getRoles().size());
+        assertEquals("admin", user.getRoles().get(0).getName());
+        assertEquals("admin", user.getRoles().get(0).getRoleKey());
+    }
+
+    private static Role role(Long id) {
+        Role role = new Role();
+        role.setId(id);
+        return role;
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    /**
+     * 统计实际执行的查询语句数
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}))
+    static class StatementCounter implements Interceptor {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet();
+            return invocation.proceed();
+        }
+
+        @Override
+        public Object plugin(Object target) {
+            return Plugin.wrap(target, this);
+        }
+
+        @Override
+        public void setProperties(Properties properties) {
+        }
+
+        int get() {
+            return count.get();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package tech.pdai.springboot.mysql8.mybatis.anno.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import tech.pdai.springboot.mysql8.mybatis.anno.dao.IUserDao;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.Role;
+import tech.pdai.springboot.mysql8.mybatis.anno.entity.User;
+import tech.pdai.springboot.mysql8.mybatis.anno.service.IUserService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量保存测试 - 主键回填与角色关联默认运行；逐条insert与BATCH执行器saveBatch的耗时对比只输出到日志，
+ * 不是JMH基准，打了benchmark标签，-Pbenchmark运行
+ *
+ * @author pdai
+ */
+@Slf4j
+@SpringBootTest(properties = "mybatis.batch.flush-size=300")
+@ActiveProfiles("test")
+@Transactional
+class UserSaveBatchBenchmarkTest {
+
+    private static final int USERS = 2000;
+
+    @Autowired
+    private IUserService userService;
+
+    @Autowired
+    private IUserDao userDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testSaveBatchBackFillsIdsAndRoles() {
+        // flush-size为300，最后一批不满
+        List<User> users = users("batch", 1000);
+
+        assertEquals(1000, userService.saveBatch(users));
+
+        Set<Long> ids = new HashSet<>();
+        users.forEach(user -> ids.add(user.getId()));
+        assertFalse(ids.contains(null));
+        assertEquals(1000, ids.size());
+        User saved = userDao.findById(users.get(999).getId());
+        assertEquals("batch999", saved.getUserName());
+        assertEquals(2000, jdbcTemplate.queryForObject(
+                "select count(*) from tb_user_role ur join tb_user u on u.id = ur.user_id"
+                        + " where u.user_name like 'batch%'", Integer.class));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testSaveBatchVersusLoopedSave() {
+        List<User> looped = users("looped", USERS);
+        long start = System.nanoTime();
+        for (User user : looped) {
+            userService.save(user);
+            for (Role role : user.getRoles()) {
+                userDao.saveUserRole(user.getId(), role.getId());
+            }
+        }
+        long loopedNanos = System.nanoTime() - start;
+
+        List<User> batched = users("batched", USERS);
+        start = System.nanoTime();
+        userService.saveBatch(batched);
+        long batchedNanos = System.nanoTime() - start;
+
+        log.info("save {} users with 2 roles: looped {} ms, batch {} ms, speedup {}", USERS, loopedNanos / 1_000_000,
+                batchedNanos / 1_000_000, String.format("%.1f", loopedNanos / (double) batchedNanos));
+        assertEquals(2 * USERS, jdbcTemplate.queryForObject(
+                "select count(*) from tb_user_role ur join tb_user u on u.id = ur.user_id"
+                        + " where u.user_name like 'batched%'", Integer.class));
+    }
+
+    private static List<User> users(String prefix, int count) {
+        List<Role> roles = Arrays.asList(role(1L), role(2L));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setUserName(prefix + i);
+            user.setPassword("password");
+            user.setEmail(prefix + i + "@example.com");
+            user.setPhoneNumber(1000000000L + i);
+            user.setDescription("批量保存");
+            user.setRoles(roles);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static Role role(Long id) {
+        Role role = new Role();
+        role.setId(id);
+        return role;
+    }
+}